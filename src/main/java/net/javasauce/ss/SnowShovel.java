@@ -15,6 +15,7 @@ import net.javasauce.ss.tasks.DecompileTask;
 import net.javasauce.ss.tasks.DownloadTask;
 import net.javasauce.ss.tasks.PrepareToolTask;
 import net.javasauce.ss.tasks.RemapperTask;
+import net.javasauce.ss.tasks.RetestTask;
 import net.javasauce.ss.tasks.detect.DetectChangesTask;
 import net.javasauce.ss.tasks.git.*;
 import net.javasauce.ss.tasks.report.DiscordReportTask;
@@ -22,9 +23,12 @@ import net.javasauce.ss.tasks.report.GenerateComparisonsTask;
 import net.javasauce.ss.tasks.util.*;
 import net.javasauce.ss.util.*;
 import net.javasauce.ss.util.matrix.JobMatrix;
+import net.javasauce.ss.util.matrix.WorkCoordinator;
+import net.javasauce.ss.util.matrix.WorkerClient;
 import net.javasauce.ss.util.task.Task;
 import net.javasauce.ss.util.task.TaskOutput;
 import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.transport.CredentialsProvider;
 import org.eclipse.jgit.transport.UsernamePasswordCredentialsProvider;
 import org.jetbrains.annotations.Nullable;
@@ -32,12 +36,13 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.*;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static java.util.List.of;
 
@@ -81,8 +86,6 @@ public class SnowShovel {
             .build()
     );
 
-    private static final Map<JavaVersion, SetupJdkTask> JDK_TASKS = new HashMap<>();
-
     public static final MavenNotation FAST_REMAPPER_VERSION = MavenNotation.parse("net.covers1624:FastRemapper:0.3.2.23@zip");
     public static final MavenNotation DECOMPILER_TEMPLATE = MavenNotation.parse("net.javasauce:Decompiler:0:test-engine@zip");
     public static final String VERSION;
@@ -97,12 +100,15 @@ public class SnowShovel {
         VERSION = version != null ? version : "dev";
     }
 
-    public static void main(String[] args) throws IOException {
+    public static void main(String[] args) throws IOException, InterruptedException {
         OptionParser parser = new OptionParser();
         OptionSpec<String> nonOptions = parser.nonOptions();
 
         OptionSpec<Void> helpOpt = parser.acceptsAll(of("h", "help"), "Prints this help").forHelp();
 
+        // Options which change how versions are processed, forwarded to --local-matrix worker processes.
+        List<OptionSpec<?>> workerOpts = new ArrayList<>();
+
         var runMatrixBuilder = parser.accepts("run-matrix", "Run using a matrix segment.");
         var finalizeMatrixBuilder = parser.accepts("finalize-matrix", "Finalize a matrix run.");
 
@@ -116,6 +122,11 @@ public class SnowShovel {
                 .ofType(Integer.class)
                 .defaultsTo(8);
 
+        var matrixBudgetOpt = parser.accepts("matrix-budget", "The target number of minutes each job should take. When set, jobs are sized by historical version timings instead of --matrix-size.")
+                .availableIf(genMatrixOpt)
+                .withRequiredArg()
+                .ofType(Integer.class);
+
         var runMatrixOpt = runMatrixBuilder
                 .availableUnless(finalizeMatrixBuilder)
                 .withRequiredArg()
@@ -126,11 +137,84 @@ public class SnowShovel {
                 .withRequiredArg()
                 .withValuesConvertedBy(new PathConverter(PathProperties.FILE_EXISTING));
 
+        var bundleOutOpt = parser.accepts("bundle-out", "Write the results of this matrix job to a git bundle at the given path, instead of pushing temp tags.")
+                .availableIf(runMatrixBuilder)
+                .withRequiredArg()
+                .withValuesConvertedBy(new PathConverter());
+
+        var bundleInOpt = parser.accepts("bundle-in", "Fetch matrix job results from the given git bundles, or directories of bundles, before finalizing.")
+                .availableIf(finalizeMatrixBuilder)
+                .withRequiredArg()
+                .withValuesConvertedBy(new PathConverter(PathProperties.READABLE));
+
+        var coordinateOpt = parser.accepts("coordinate", "Serve the current work to workers on the given port, then finalize whatever they completed.")
+                .withRequiredArg()
+                .ofType(Integer.class);
+
+        var leaseTimeoutOpt = parser.accepts("lease-timeout", "The number of seconds a worker may go without a heartbeat before its version is handed to another worker.")
+                .availableIf(coordinateOpt)
+                .withRequiredArg()
+                .ofType(Integer.class)
+                .defaultsTo(300);
+
+        var workerOpt = parser.accepts("worker", "Run as a worker, pulling versions from the coordinator at the given url until it runs out.")
+                .availableUnless(coordinateOpt)
+                .withRequiredArg();
+
+        var localMatrixOpt = parser.accepts("local-matrix", "Split the current work between the given number of worker processes on this machine, then finalize.")
+                .availableUnless(genMatrixOpt, runMatrixBuilder, finalizeMatrixBuilder, coordinateOpt, workerOpt)
+                .withRequiredArg()
+                .ofType(Integer.class);
+
+        var worktreeDirOpt = parser.accepts("worktree-dir", "Use the given directory for the git checkout and temporary files, instead of the working directory. Used by --local-matrix workers.")
+                .withRequiredArg()
+                .withValuesConvertedBy(new PathConverter());
+
+        var worktreesOpt = parser.accepts("worktrees", "The number of git working trees to spread stage 2's checkout, copy and commit steps between.")
+                .withRequiredArg()
+                .ofType(Integer.class)
+                .defaultsTo(1);
+        workerOpts.add(worktreesOpt);
+
+        var incrementalOpt = parser.accepts("incremental-decompile", "Only decompile classes which changed since the previous version of the same type, and their dependents, re-using the previous version's output for the rest. The previous version's output must be available locally.");
+        var verifyIncrementalOpt = parser.accepts("verify-incremental", "Check the given number of re-used classes against a fresh decompile, decompiling the whole jar if any differ. 0 to disable.")
+                .availableIf(incrementalOpt)
+                .withRequiredArg()
+                .ofType(Integer.class)
+                .defaultsTo(DecompileTask.DEFAULT_VERIFY_SAMPLE);
+        workerOpts.addAll(List.of(incrementalOpt, verifyIncrementalOpt));
+
+        var virtualIoOpt = parser.accepts("virtual-io", "Run downloads on virtual threads instead of a fixed size pool. Requests are still limited by --max-requests-per-host. Requires '--http-engine java', curl's native calls would pin the carrier threads.");
+        var maxRequestsPerHostOpt = parser.accepts("max-requests-per-host", "The maximum number of concurrent requests made to a single host. Each host's limit adapts below this, to what it sustains.")
+                .withRequiredArg()
+                .ofType(Integer.class)
+                .defaultsTo(16);
+        workerOpts.addAll(List.of(virtualIoOpt, maxRequestsPerHostOpt));
+
+        var httpEngineOpt = parser.accepts("http-engine", "The HTTP implementation to download artifacts with, 'curl' or 'java'. The java engine pools connections and uses HTTP/2 where available. Other requests, such as JDK provisioning, always use curl.")
+                .withRequiredArg()
+                .defaultsTo("curl");
+        workerOpts.add(httpEngineOpt);
+
+        var mirrorOpt = parser.accepts("mirror", "Record every artifact a run uses to the given directory, including those already valid locally. With --offline, serve them from it instead. JDKs are not mirrored.")
+                .withRequiredArg()
+                .withValuesConvertedBy(new PathConverter());
+        var offlineOpt = parser.accepts("offline", "Never touch the network for artifacts, serving them all from the --mirror directory. Use a local --gitRepo, and don't --gitPush. JDKs are never provisioned, every JDK version needed must be installed on the system beforehand.")
+                .availableIf(mirrorOpt);
+        workerOpts.addAll(List.of(mirrorOpt, offlineOpt));
+
         // Git flags.
         OptionSpec<String> gitRepoOpt = parser.accepts("gitRepo", "The remote git repository to use.")
                 .withRequiredArg();
 
         OptionSpec<Void> gitPushOpt = parser.accepts("gitPush", "If SnowShovel should push to the repository.");
+        OptionSpec<String> gitBackendOpt = parser.accepts("git-backend", "The git implementation to use, 'jgit' or 'native', optionally per operation: 'stage=native,commit=jgit,push=native'.")
+                .withRequiredArg()
+                .defaultsTo("jgit");
+        workerOpts.add(gitBackendOpt);
+        OptionSpec<Void> gitMaintenanceOpt = parser.accepts("git-maintenance", "If SnowShovel should repack the repository with a commit-graph and bitmaps after finalizing. Only useful for persistent checkouts.");
+        OptionSpec<Void> gitReftableOpt = parser.accepts("git-reftable", "If SnowShovel should store refs in the reftable format, converting an existing checkout if required. The native git backend requires git 2.45 or newer.");
+        workerOpts.add(gitReftableOpt);
         OptionSpec<Void> gitCleanOpt = parser.accepts("gitClean", "If SnowShovel should delete the previous checkout (if available) before doing stuff.");
 
         // Dev flags.
@@ -169,17 +253,53 @@ public class SnowShovel {
         CredentialsProvider.setDefault(new UsernamePasswordCredentialsProvider(gitUser, gitPass));
 
         var workDir = Path.of(".").toAbsolutePath().normalize();
+        // Shared by --local-matrix workers, everything written to these is guarded by ProcessLocks.
         var versionsDir = workDir.resolve("versions");
         var librariesDir = workDir.resolve("libraries");
         var toolsDir = workDir.resolve("tools");
-        var tempDir = workDir.resolve("temp");
-
-        var repoDir = workDir.resolve("repo");
-        var http = new Curl4jHttpEngine(CABundle.builtIn());
-        var jdkProvider = new JdkProvider(toolsDir.resolve("jdks/"), http);
+        var worktreeDir = optSet.has(worktreeDirOpt) ? optSet.valueOf(worktreeDirOpt).toAbsolutePath().normalize() : workDir;
+        var tempDir = worktreeDir.resolve("temp");
+        // Kept outside the repo, as the checkout is wiped between versions.
+        var manifestSnapshot = versionsDir.resolve("manifest_snapshot.bin");
+
+        var repoDir = worktreeDir.resolve("repo");
+        HttpEngine httpEngine = new Curl4jHttpEngine(CABundle.builtIn());
+        HttpTransport transport = switch (optSet.valueOf(httpEngineOpt)) {
+            case "curl" -> new EngineTransport(httpEngine);
+            case "java" -> new JavaHttpTransport();
+            default -> {
+                LOGGER.error("Unknown http engine '{}', expected 'curl' or 'java'.", optSet.valueOf(httpEngineOpt));
+                System.exit(1);
+                throw new AssertionError();
+            }
+        };
+        var offline = optSet.has(offlineOpt);
+        if (optSet.has(mirrorOpt)) {
+            var mirror = new ArtifactMirror(optSet.valueOf(mirrorOpt).toAbsolutePath().normalize());
+            transport = offline ? MirrorTransport.offline(mirror) : MirrorTransport.recording(transport, mirror);
+        }
+        // Offline, there are no hosts to protect.
+        var limiter = offline ? HostLimiter.unlimited() : new HostLimiter(optSet.valueOf(maxRequestsPerHostOpt));
+        var http = new HttpCache(httpEngine, transport, workDir.resolve("http_cache"), limiter);
+        // JDK provisioning is the one download which bypasses HttpCache and its HostLimiter. Adoptium's
+        // provisioner makes its own API and archive requests through the HttpEngine. It runs at most
+        // once per Java version, under a ProcessLock, so there is nothing to coalesce or revalidate.
+        var jdkProvider = new JdkProvider(toolsDir.resolve("jdks/"), http.engine(), offline);
+
+        if (optSet.has(virtualIoOpt) && !optSet.valueOf(httpEngineOpt).equals("java") && !offline) {
+            LOGGER.error("--virtual-io requires '--http-engine java', or --offline.");
+            System.exit(1);
+            return;
+        }
+        // The executor downloads run on. JDK provisioning always uses curl, so stays on the platform pool.
+        Executor ioExecutor = optSet.has(virtualIoOpt) ? Task.VIRTUAL_EXECUTOR : DOWNLOAD_EXECUTOR;
 
         var shouldPush = optSet.has(gitPushOpt);
+        var worktreeCount = optSet.valueOf(worktreesOpt);
+        var incremental = optSet.has(incrementalOpt);
+        var verifySample = optSet.valueOf(verifyIncrementalOpt);
         var shouldClean = optSet.has(gitCleanOpt);
+        var shouldMaintain = optSet.has(gitMaintenanceOpt);
 
         var simulateFullRun = optSet.has(simulateFullRunOpt);
         var decompilerOverride = Optional.ofNullable(optSet.valueOf(decompilerVersionOpt));
@@ -194,6 +314,8 @@ public class SnowShovel {
             task.repoDir.set(repoDir);
             task.repoUrl.set(repoUrl);
             task.clearClone.set(shouldClean);
+            task.backends.set(GitBackends.parse(optSet.valueOf(gitBackendOpt)));
+            task.reftable.set(optSet.has(gitReftableOpt));
         });
 
         var checkoutMain = CheckoutBranchTask.create("checkoutMain", GIT_EXECUTOR, task -> {
@@ -205,7 +327,7 @@ public class SnowShovel {
         var git = gitSetupTask.output.get();
         try (git; DOWNLOAD_EXECUTOR; REMAPPER_EXECUTOR; DECOMPILE_EXECUTOR; GIT_EXECUTOR) {
             if (optSet.has(genMatrixOpt)) {
-                var stage1 = runStage1(http, repoDir, gitSetupTask, simulateFullRun, mcVersionOverride, decompilerOverride, shouldPush);
+                var stage1 = runStage1(http, ioExecutor, repoDir, versionsDir, manifestSnapshot, gitSetupTask, simulateFullRun, mcVersionOverride, decompilerOverride, shouldPush);
                 if (stage1 == null) {
                     LOGGER.info("No changes.");
                     return;
@@ -213,12 +335,15 @@ public class SnowShovel {
                 if (shouldPush) {
                     var pushTask = PushAllTask.create("pushAllTags", GIT_EXECUTOR, task -> {
                         task.git.set(gitSetupTask.output);
+                        task.backends.set(gitSetupTask.backends);
                         task.tags.set(true);
                     });
                     Task.runTasks(pushTask);
                 }
 
-                var matrix = RunRequest.splitJobs(stage1.runRequest, optSet.valueOf(matrixSizeOpt));
+                var timings = VersionTimings.load(repoDir.resolve("cache/timings.json"));
+                var budget = optSet.has(matrixBudgetOpt) ? Duration.ofMinutes(optSet.valueOf(matrixBudgetOpt)) : null;
+                var matrix = RunRequest.splitJobs(stage1.runRequest, optSet.valueOf(matrixSizeOpt), timings, budget);
                 JobMatrix.write(optSet.valueOf(genMatrixOpt), matrix);
                 return;
             }
@@ -231,11 +356,22 @@ public class SnowShovel {
                 });
                 Task.runTasks(fastForwardMain);
 
-                var versionSet = new ProcessableVersionSet(http, repoDir.resolve("cache"));
+                var versionSet = new ProcessableVersionSet(http, ioExecutor, repoDir.resolve("cache"), manifestSnapshot);
                 versionSet.allVersions();
 
                 var runRequest = RunRequest.parse(optSet.valueOf(runMatrixOpt));
-                runStage2(http, jdkProvider, toolsDir, librariesDir, versionsDir, tempDir, repoDir, runRequest, versionSet, gitSetupTask, shouldPush, repoUrl);
+                var bundleOut = optSet.valueOf(bundleOutOpt);
+                runStage2(http, ioExecutor, jdkProvider, toolsDir, librariesDir, versionsDir, repoDir, runRequest, versionSet, gitSetupTask, worktreeCount, incremental, verifySample, shouldPush && bundleOut == null, repoUrl);
+                if (bundleOut != null) {
+                    var bundleTask = BundleTask.create("bundleTags", GIT_EXECUTOR, task -> {
+                        task.git.set(gitSetupTask.output);
+                        task.tags.set(FastStream.of(runRequest.versions())
+                                .map(e -> "temp/" + versionSet.getManifest(e.id()).computeBranchName())
+                                .toList());
+                        task.output.set(bundleOut);
+                    });
+                    Task.runTasks(bundleTask);
+                }
                 return;
             }
             if (optSet.has(finalizeMatrixOpt)) {
@@ -247,28 +383,125 @@ public class SnowShovel {
                 });
                 Task.runTasks(fastForwardMain);
 
-                var versionSet = new ProcessableVersionSet(http, repoDir.resolve("cache"));
+                List<Task> fetchBundles = new ArrayList<>();
+                for (Path bundle : listBundles(optSet.valuesOf(bundleInOpt))) {
+                    fetchBundles.add(FetchTask.create("fetchBundle_" + bundle.getFileName(), GIT_EXECUTOR, task -> {
+                        task.git.set(gitSetupTask.output);
+                        task.remote.set(bundle.toString());
+                        task.refSpecs.set(List.of("refs/tags/temp/*:refs/tags/temp/*"));
+                    }));
+                }
+                Task.runTasks(fetchBundles);
+
+                var versionSet = new ProcessableVersionSet(http, ioExecutor, repoDir.resolve("cache"), manifestSnapshot);
                 var matrix = JobMatrix.parse(optSet.valueOf(finalizeMatrixOpt));
                 var runRequest = RunRequest.mergeJobs(matrix);
-                runStage3(http, repoDir, runRequest, versionSet, gitSetupTask, shouldPush, repoUrl);
+                runStage3(http, versionsDir, repoDir, runRequest, versionSet, gitSetupTask, shouldPush, shouldMaintain, repoUrl);
+                return;
+            }
+
+            if (optSet.has(coordinateOpt) || optSet.has(workerOpt)) {
+                if (!shouldPush) {
+                    LOGGER.error("Coordinator and worker modes require --gitPush, workers hand their results off via temp tags on the remote.");
+                    System.exit(1);
+                    return;
+                }
+            }
+            if (optSet.has(localMatrixOpt)) {
+                var stage1 = runStage1(http, ioExecutor, repoDir, versionsDir, manifestSnapshot, gitSetupTask, simulateFullRun, mcVersionOverride, decompilerOverride, shouldPush);
+                if (stage1 == null) {
+                    LOGGER.info("No changes.");
+                    return;
+                }
+
+                int workers = optSet.valueOf(localMatrixOpt);
+                var timings = VersionTimings.load(repoDir.resolve("cache/timings.json"));
+                var matrix = RunRequest.splitJobs(stage1.runRequest, Math.ceilDiv(stage1.runRequest.versions().size(), workers), timings, null);
+                runLocalMatrix(matrix, workDir, workDir.resolve("worktrees"), repoDir, gitSetupTask, forwardArgs(optSet, workerOpts));
+                runStage3(http, versionsDir, repoDir, stage1.runRequest, stage1.versionSet, gitSetupTask, shouldPush, shouldMaintain, repoUrl);
                 return;
             }
+            if (optSet.has(coordinateOpt)) {
+                var stage1 = runStage1(http, ioExecutor, repoDir, versionsDir, manifestSnapshot, gitSetupTask, simulateFullRun, mcVersionOverride, decompilerOverride, shouldPush);
+                if (stage1 == null) {
+                    LOGGER.info("No changes.");
+                    return;
+                }
+
+                RunRequest completed;
+                var address = new InetSocketAddress(optSet.valueOf(coordinateOpt));
+                var leaseTimeout = Duration.ofSeconds(optSet.valueOf(leaseTimeoutOpt));
+                try (var coordinator = new WorkCoordinator(stage1.runRequest, address, leaseTimeout, 3)) {
+                    coordinator.start();
+                    completed = coordinator.awaitCompletion();
+                }
+
+                // Workers push their temp tags as they go, pull them in before finalizing.
+                var fetchTags = FetchTask.create("fetchTempTags", GIT_EXECUTOR, task -> {
+                    task.git.set(gitSetupTask.output);
+                    task.refSpecs.set(List.of("refs/tags/temp/*:refs/tags/temp/*"));
+                });
+                Task.runTasks(fetchTags);
 
-            var stage1 = runStage1(http, repoDir, gitSetupTask, simulateFullRun, mcVersionOverride, decompilerOverride, shouldPush);
+                runStage3(http, versionsDir, repoDir, completed, stage1.versionSet, gitSetupTask, shouldPush, shouldMaintain, repoUrl);
+                return;
+            }
+            if (optSet.has(workerOpt)) {
+                // Our clone may be older than the coordinator's run, make sure we have its temp/main tag.
+                var fetchOrigin = FetchTask.create("fetchOrigin", GIT_EXECUTOR, task -> {
+                    task.git.set(gitSetupTask.output);
+                    task.refSpecs.set(List.of("refs/heads/*:refs/remotes/origin/*", "refs/tags/temp/*:refs/tags/temp/*"));
+                });
+                var fastForwardMain = FastForwardTask.create("fastForwardMain", GIT_EXECUTOR, task -> {
+                    task.dependsOn(fetchOrigin);
+                    task.git.set(gitSetupTask.output);
+                    task.branch.set("main");
+                    task.tag.set(Optional.of("temp/main"));
+                });
+                Task.runTasks(fastForwardMain);
+
+                var versionSet = new ProcessableVersionSet(http, ioExecutor, repoDir.resolve("cache"), manifestSnapshot);
+                versionSet.allVersions();
+
+                var client = new WorkerClient(http.engine(), optSet.valueOf(workerOpt), "worker-" + ProcessHandle.current().pid());
+                runWorker(client, http, ioExecutor, jdkProvider, toolsDir, librariesDir, versionsDir, repoDir, versionSet, gitSetupTask, worktreeCount, incremental, verifySample, shouldPush, repoUrl);
+                return;
+            }
+
+            var stage1 = runStage1(http, ioExecutor, repoDir, versionsDir, manifestSnapshot, gitSetupTask, simulateFullRun, mcVersionOverride, decompilerOverride, shouldPush);
             if (stage1 == null) {
                 LOGGER.info("No changes.");
                 return;
             }
 
-            runStage2(http, jdkProvider, toolsDir, librariesDir, versionsDir, tempDir, repoDir, stage1.runRequest, stage1.versionSet, gitSetupTask, shouldPush, repoUrl);
-            runStage3(http, repoDir, stage1.runRequest, stage1.versionSet, gitSetupTask, shouldPush, repoUrl);
+            runStage2(http, ioExecutor, jdkProvider, toolsDir, librariesDir, versionsDir, repoDir, stage1.runRequest, stage1.versionSet, gitSetupTask, worktreeCount, incremental, verifySample, shouldPush, repoUrl);
+            runStage3(http, versionsDir, repoDir, stage1.runRequest, stage1.versionSet, gitSetupTask, shouldPush, shouldMaintain, repoUrl);
         }
         LOGGER.info("Done!");
     }
 
+    private static List<Path> listBundles(List<Path> paths) throws IOException {
+        List<Path> bundles = new ArrayList<>();
+        for (Path path : paths) {
+            if (!Files.isDirectory(path)) {
+                bundles.add(path);
+                continue;
+            }
+            try (var files = Files.list(path)) {
+                files.filter(e -> e.getFileName().toString().endsWith(".bundle"))
+                        .sorted()
+                        .forEach(bundles::add);
+            }
+        }
+        return bundles;
+    }
+
     private static @Nullable Stage1Pair runStage1(
-            HttpEngine http,
+            HttpCache http,
+            Executor ioExecutor,
             Path repoDir,
+            Path versionsDir,
+            Path manifestSnapshot,
             SetupGitRepoTask gitSetupTask,
             boolean simulateFullRun,
             List<String> mcVersionOverride,
@@ -276,9 +509,12 @@ public class SnowShovel {
             boolean shouldPush
     ) throws IOException {
         // Stage 1, Detect changes.
-        var detectChanges = DetectChangesTask.create("detectChanges", ForkJoinPool.commonPool(), task -> {
+        var detectChanges = DetectChangesTask.create("detectChanges", Task.VIRTUAL_EXECUTOR, task -> {
             task.http.set(http);
+            task.downloadExecutor.set(ioExecutor);
             task.cacheDir.set(repoDir.resolve("cache"));
+            task.manifestSnapshot.set(manifestSnapshot);
+            task.versionsDir.set(versionsDir);
             task.versionFilters.set(mcVersionOverride);
             task.decompilerOverride.set(decompilerOverride);
             task.simulateFullRun.set(simulateFullRun);
@@ -294,6 +530,7 @@ public class SnowShovel {
 
         var tempTagMain = CommitTask.create("tagMain", GIT_EXECUTOR, task -> {
             task.git.set(gitSetupTask.output);
+            task.backends.set(gitSetupTask.backends);
             task.commitMessage.set(Optional.of(runRequest.reason()));
             task.tagName.set(Optional.of("temp/main"));
         });
@@ -306,6 +543,7 @@ public class SnowShovel {
             var pushTask = PushAllTask.create("pushMainTag", GIT_EXECUTOR, task -> {
                 task.dependsOn(tempTagMain);
                 task.git.set(gitSetupTask.output);
+                task.backends.set(gitSetupTask.backends);
                 task.tags.set(true);
             });
             pushMainTagBarrier.dependsOn(pushTask);
@@ -315,7 +553,7 @@ public class SnowShovel {
         if (DISCORD_WEBHOOK != null) {
             new DiscordWebhook(DISCORD_WEBHOOK)
                     .setContent("SnowShovel run starting, processing " + runRequest.versions().size() + " versions.")
-                    .execute(http);
+                    .execute(http.engine());
         }
         return new Stage1Pair(runRequest, versionSet);
     }
@@ -326,46 +564,110 @@ public class SnowShovel {
     ) { }
 
     private static void runStage2(
-            HttpEngine http,
+            HttpCache http,
+            Executor ioExecutor,
             JdkProvider jdkProvider,
             Path toolsDir,
             Path librariesDir,
             Path versionsDir,
-            Path tempDir,
             Path repoDir,
             RunRequest runRequest,
             ProcessableVersionSet versionSet,
             SetupGitRepoTask gitSetupTask,
+            int worktreeCount,
+            boolean incremental,
+            int verifySample,
             boolean shouldPush,
             String repoUrl
-    ) {
+    ) throws IOException {
 
         // Stage 2
-        var prepareRemapper = PrepareToolTask.create("prepareRemapper", DOWNLOAD_EXECUTOR, http, task -> {
+        var prepareRemapper = PrepareToolTask.create("prepareRemapper", ioExecutor, http, task -> {
             task.notation.set(FAST_REMAPPER_VERSION);
             task.toolDir.set(toolsDir);
         });
 
-        var prepareDecompiler = PrepareToolTask.create("prepareDecompiler", DOWNLOAD_EXECUTOR, http, task -> {
+        var prepareDecompiler = PrepareToolTask.create("prepareDecompiler", ioExecutor, http, task -> {
             task.notation.set(DECOMPILER_TEMPLATE.withVersion(runRequest.decompilerVersion()));
             task.toolDir.set(toolsDir);
         });
 
-        var downloadGradleWrapper = DownloadTask.create("downloadGradleWrapper", DOWNLOAD_EXECUTOR, http, task -> {
+        var downloadGradleWrapper = DownloadTask.create("downloadGradleWrapper", ioExecutor, http, task -> {
             task.output.set(librariesDir.resolve("GradleWrapper.zip"));
             task.url.set("https://covers1624.net/Files/GradleWrapper-8.10.2.zip");
             task.downloadLen.set(44825L);
             task.downloadHash.set(Optional.of("2e355d2ede2307bfe40330db29f52b9b729fd9b2"));
         });
 
-        Map<LibraryDownload, DownloadTask> libraryDownloads = new HashMap<>();
+        // Each worktree gets its own thread, versions are spread between them and processed in order.
+        List<Worktree> worktrees = new ArrayList<>();
+        if (worktreeCount <= 1) {
+            worktrees.add(new Worktree(gitSetupTask.output, GIT_EXECUTOR, repoDir, false));
+        } else {
+            for (int i = 0; i < worktreeCount; i++) {
+                var executor = Executors.newSingleThreadExecutor(new BasicThreadFactory.Builder()
+                        .namingPattern("Worktree Thread " + i)
+                        .daemon(true)
+                        .build()
+                );
+                var dir = repoDir.resolveSibling("pool").resolve(String.valueOf(i));
+                var setupWorktree = SetupPooledWorktreeTask.create("setupWorktree_" + i, executor, task -> {
+                    task.git.set(gitSetupTask.output);
+                    task.worktreeDir.set(dir);
+                });
+                worktrees.add(new Worktree(setupWorktree.output, executor, dir, true));
+            }
+        }
+        Map<Worktree, Task> lastCommitOnWorktree = new HashMap<>();
+        Map<String, DecompileTask> decompileTasks = new HashMap<>();
 
         var gitTagAllBarrier = new BarrierTask("gitTagAllBarrier");
-        for (var version : runRequest.versions()) {
+        for (int i = 0; i < runRequest.versions().size(); i++) {
+            var version = runRequest.versions().get(i);
+            var worktree = worktrees.get(i % worktrees.size());
             var id = version.id();
             var manifest = versionSet.getManifest(id);
 
-            var downloadClient = DownloadTask.create("downloadClient_" + id, DOWNLOAD_EXECUTOR, http, task -> {
+            var branchName = manifest.computeBranchName();
+            var previousCommit = lastCommitOnWorktree.get(worktree);
+            var libDefs = LibraryDownload.getVersionLibraries(manifest, librariesDir);
+            var impact = version.impact();
+            // Checking out a missing branch would create an empty orphan, with nothing to regenerate or retest.
+            if (impact != ChangeImpact.DECOMPILE && CheckoutBranchTask.findBranch(gitSetupTask.output.get().getRepository(), branchName) == null) {
+                LOGGER.info("Branch {} for {} does not exist, decompiling instead.", branchName, id);
+                impact = ChangeImpact.DECOMPILE;
+            }
+            if (impact == ChangeImpact.REGENERATE) {
+                // The decompiled output on the branch is still valid, only update the project files around it.
+                var checkoutBranchTask = CheckoutBranchTask.create("checkout_" + id, worktree.executor(), task -> {
+                    if (previousCommit != null) task.dependsOn(previousCommit);
+                    task.git.set(worktree.git());
+                    if (worktree.pooled()) task.upstream.deriveFrom(gitSetupTask.output, Optional::of);
+                    task.branch.set(branchName);
+                });
+                var genProjectTask = GenerateGradleProjectTask.create("generateGradleProject_" + id, worktree.executor(), task -> {
+                    task.dependsOn(checkoutBranchTask);
+                    task.projectDir.set(worktree.dir());
+                    task.gradleWrapperDist.set(downloadGradleWrapper.output);
+                    task.javaVersion.set(manifest.computeJavaVersion());
+                    task.libraries.set(libDefs);
+                    task.mcManifest.set(manifest);
+                    task.gitRepoUrl.set(repoUrl);
+                    task.reuseTestStats.set(true);
+                });
+                var commitTask = CommitTask.create("commitAndTag_" + id, worktree.executor(), task -> {
+                    task.dependsOn(genProjectTask);
+                    task.git.set(worktree.git());
+                    task.backends.set(gitSetupTask.backends);
+                    task.commitMessage.set(Optional.of(version.commitName()));
+                    task.tagName.set(Optional.of("temp/" + branchName));
+                });
+                lastCommitOnWorktree.put(worktree, commitTask);
+                publishCommit(gitSetupTask, worktree, id, branchName, commitTask, gitTagAllBarrier);
+                continue;
+            }
+
+            var downloadClient = DownloadTask.create("downloadClient_" + id, ioExecutor, http, task -> {
                 var download = manifest.downloads().get("client");
                 task.output.set(versionsDir.resolve(id).resolve(id + "-client.jar"));
                 task.url.set(download.url());
@@ -373,9 +675,10 @@ public class SnowShovel {
                 task.downloadLen.set(download.size());
             });
 
+            Map<String, Task> timedTasks = new LinkedHashMap<>();
             TaskOutput<Path> jarToDecompile;
             if (manifest.downloads().containsKey("client_mappings")) {
-                var downloadClientMappings = DownloadTask.create("downloadClientMappings_" + id, DOWNLOAD_EXECUTOR, http, task -> {
+                var downloadClientMappings = DownloadTask.create("downloadClientMappings_" + id, ioExecutor, http, task -> {
                     var download = manifest.downloads().get("client_mappings");
                     task.output.set(versionsDir.resolve(id).resolve(id + "-client_mappings.jar"));
                     task.url.set(download.url());
@@ -391,66 +694,120 @@ public class SnowShovel {
                     task.remapped.set(versionsDir.resolve(id).resolve(id + "-client-remapped.jar"));
                 });
                 jarToDecompile = remapClient.remapped;
+                timedTasks.put(VersionTimings.STAGE_REMAP, remapClient);
             } else {
                 jarToDecompile = downloadClient.output;
             }
 
-            var libDefs = LibraryDownload.getVersionLibraries(manifest, librariesDir);
+            // Shared between versions, DownloadTask de-duplicates these for us.
             List<DownloadTask> libraries = FastStream.of(libDefs)
-                    .map(library -> libraryDownloads.computeIfAbsent(library, e2 ->
-                            DownloadTask.create("downloadLibrary_" + library.notation(), DOWNLOAD_EXECUTOR, http, task -> {
-                                task.url.set(library.url());
-                                task.output.set(library.path());
-                                task.downloadHash.set(Optional.ofNullable(library.sha1()));
-                                task.downloadLen.set(library.size());
-                            })))
+                    .map(library -> DownloadTask.create("downloadLibrary_" + library.notation(), ioExecutor, http, task -> {
+                        task.url.set(library.url());
+                        task.output.set(library.path());
+                        task.downloadHash.set(Optional.ofNullable(library.sha1()));
+                        task.downloadLen.set(library.size());
+                    }))
                     .toList();
 
+            if (impact == ChangeImpact.RETEST) {
+                // The decompiled output on the branch is still valid, only its compile tests must run again.
+                var checkoutBranchTask = CheckoutBranchTask.create("checkout_" + id, worktree.executor(), task -> {
+                    if (previousCommit != null) task.dependsOn(previousCommit);
+                    task.git.set(worktree.git());
+                    if (worktree.pooled()) task.upstream.deriveFrom(gitSetupTask.output, Optional::of);
+                    task.branch.set(branchName);
+                });
+                var retestTask = RetestTask.create("retest_" + id, DECOMPILE_EXECUTOR, task -> {
+                    task.dependsOn(checkoutBranchTask);
+                    task.javaReferenceHome.set(getJdkTask(jdkProvider, manifest.computeJavaVersion()).javaHome);
+                    task.libraries.set(FastStream.of(libraries).map(e -> e.output).toList());
+                    task.inputJar.set(jarToDecompile);
+                    task.javacArgs.set(getJavacArgs(manifest));
+                    task.projectDir.set(worktree.dir());
+                });
+                var genProjectTask = GenerateGradleProjectTask.create("generateGradleProject_" + id, worktree.executor(), task -> {
+                    task.dependsOn(retestTask);
+                    task.projectDir.set(worktree.dir());
+                    task.gradleWrapperDist.set(downloadGradleWrapper.output);
+                    task.javaVersion.set(manifest.computeJavaVersion());
+                    task.libraries.set(libDefs);
+                    task.mcManifest.set(manifest);
+                    task.gitRepoUrl.set(repoUrl);
+                    task.reuseTestStats.set(true);
+                    task.classChanges.set(Optional.ofNullable(version.classChanges()));
+                });
+                var commitTask = CommitTask.create("commitAndTag_" + id, worktree.executor(), task -> {
+                    task.dependsOn(genProjectTask);
+                    task.git.set(worktree.git());
+                    task.backends.set(gitSetupTask.backends);
+                    task.commitMessage.set(Optional.of(version.commitName()));
+                    task.tagName.set(Optional.of("temp/" + branchName));
+                    task.timedTasks.set(timedTasks);
+                });
+                lastCommitOnWorktree.put(worktree, commitTask);
+                publishCommit(gitSetupTask, worktree, id, branchName, commitTask, gitTagAllBarrier);
+                continue;
+            }
+
             var decompileTask = DecompileTask.create("decompile_" + id, DECOMPILE_EXECUTOR, task -> {
                 task.javaRuntimeHome.set(getJdkTask(jdkProvider, pickDecompilerJavaVersion(JavaVersion.JAVA_21, manifest.computeJavaVersion())).javaHome);
                 task.javaReferenceHome.set(getJdkTask(jdkProvider, manifest.computeJavaVersion()).javaHome);
                 task.tool.set(prepareDecompiler.output);
                 task.libraries.set(FastStream.of(libraries).map(e -> e.output).toList());
                 task.inputJar.set(jarToDecompile);
-                task.output.set(tempDir.resolve(id));
+                // Kept outside the temp dir, so it survives for re-use by the next run.
+                task.output.set(versionsDir.resolve(id).resolve("decompiled"));
                 task.javacArgs.set(getJavacArgs(manifest));
+                if (incremental) {
+                    configureIncremental(task, versionSet, versionsDir, decompileTasks, manifest);
+                    task.verifySample.set(verifySample);
+                }
             });
+            decompileTasks.put(id, decompileTask);
+            timedTasks.put(VersionTimings.STAGE_DECOMPILE, decompileTask);
 
-            var branchName = manifest.computeBranchName();
-            var checkoutBranchTask = CheckoutBranchTask.create("checkout_" + id, GIT_EXECUTOR, task -> {
+            var checkoutBranchTask = CheckoutBranchTask.create("checkout_" + id, worktree.executor(), task -> {
                 task.dependsOn(decompileTask);
-                task.git.set(gitSetupTask.output);
+                // The previous version on this worktree must be finished with it first.
+                if (previousCommit != null) task.dependsOn(previousCommit);
+                task.git.set(worktree.git());
+                if (worktree.pooled()) task.upstream.deriveFrom(gitSetupTask.output, Optional::of);
                 task.branch.set(branchName);
                 task.clean.set(true);
             });
 
-            var copyTask = CopyTask.create("copyDecompileResults_" + id, GIT_EXECUTOR, task -> {
+            var copyTask = CopyTask.create("copyDecompileResults_" + id, worktree.executor(), task -> {
                 task.dependsOn(checkoutBranchTask);
                 task.input.set(decompileTask.output);
-                task.output.set(repoDir);
+                task.output.set(worktree.dir());
             });
 
             // TODO we can run this in parallel with copy, but not due to the executors they use.
             //      We can probably also move away from using a gradle wrapper dist zip now, and just run gradle to gen a wrapper
             //      we only ever used the dist zip because it was faster than stalling the program waiting for Gradle.
-            var genProjectTask = GenerateGradleProjectTask.create("generateGradleProject_" + id, GIT_EXECUTOR, task -> {
+            var genProjectTask = GenerateGradleProjectTask.create("generateGradleProject_" + id, worktree.executor(), task -> {
                 task.dependsOn(checkoutBranchTask);
-                task.projectDir.set(repoDir);
+                task.projectDir.set(worktree.dir());
                 task.gradleWrapperDist.set(downloadGradleWrapper.output);
                 task.javaVersion.set(manifest.computeJavaVersion());
                 task.libraries.set(libDefs);
                 task.mcManifest.set(manifest);
                 task.gitRepoUrl.set(repoUrl);
+                task.testStats.set(decompileTask.testStats);
+                task.classChanges.set(Optional.ofNullable(version.classChanges()));
             });
 
-            var commitTask = CommitTask.create("commitAndTag_" + id, GIT_EXECUTOR, task -> {
+            var commitTask = CommitTask.create("commitAndTag_" + id, worktree.executor(), task -> {
                 task.dependsOn(copyTask);
                 task.dependsOn(genProjectTask);
-                task.git.set(gitSetupTask.output);
+                task.git.set(worktree.git());
+                task.backends.set(gitSetupTask.backends);
                 task.commitMessage.set(Optional.of(version.commitName()));
                 task.tagName.set(Optional.of("temp/" + branchName));
+                task.timedTasks.set(timedTasks);
             });
-            gitTagAllBarrier.dependsOn(commitTask);
+            lastCommitOnWorktree.put(worktree, commitTask);
+            publishCommit(gitSetupTask, worktree, id, branchName, commitTask, gitTagAllBarrier);
         }
 
         var pushAllTagsBarrier = new BarrierTask("pushAllTags");
@@ -459,41 +816,259 @@ public class SnowShovel {
             var pushTask = PushAllTask.create("pushAllTags", GIT_EXECUTOR, task -> {
                 task.dependsOn(gitTagAllBarrier);
                 task.git.set(gitSetupTask.output);
+                task.backends.set(gitSetupTask.backends);
                 task.tags.set(true);
             });
             pushAllTagsBarrier.dependsOn(pushTask);
         }
 
-        Task.runTasks(pushAllTagsBarrier);
+        try {
+            Task.runTasks(pushAllTagsBarrier);
+        } finally {
+            for (Worktree worktree : worktrees) {
+                if (!worktree.pooled()) continue;
+
+                if (worktree.git().isValueSet()) {
+                    worktree.git().get().close();
+                }
+                worktree.executor().shutdown();
+            }
+        }
+    }
+
+    private static void configureIncremental(DecompileTask task, ProcessableVersionSet versionSet, Path versionsDir, Map<String, DecompileTask> decompileTasks, VersionManifest manifest) {
+        // Find the previous version of the same type, the one most likely to share classes with this one.
+        var allVersions = versionSet.allVersions();
+        String previousId = null;
+        for (int i = allVersions.indexOf(manifest.id()) - 1; i >= 0; i--) {
+            if (versionSet.getManifest(allVersions.get(i)).type().equals(manifest.type())) {
+                previousId = allVersions.get(i);
+                break;
+            }
+        }
+        if (previousId == null) return;
+
+        var previousTask = decompileTasks.get(previousId);
+        if (previousTask != null) {
+            // Processed in this run, wait for it.
+            task.previous.deriveFrom(previousTask.inputJar, previousTask.output, (jar, output) -> Optional.of(new DecompileTask.Previous(jar, output)));
+            return;
+        }
+        var previous = versionSet.getManifest(previousId);
+        var jarName = previous.downloads().containsKey("client_mappings") ? previousId + "-client-remapped.jar" : previousId + "-client.jar";
+        task.previous.set(Optional.of(new DecompileTask.Previous(
+                versionsDir.resolve(previousId).resolve(jarName),
+                versionsDir.resolve(previousId).resolve("decompiled")
+        )));
+    }
+
+    private static void publishCommit(SetupGitRepoTask gitSetupTask, Worktree worktree, String id, String branchName, CommitTask commitTask, BarrierTask gitTagAllBarrier) {
+        if (worktree.pooled()) {
+            // Only ref updates touch the main repository, and they all happen on the git executor.
+            var publishTag = PublishTagsTask.create("publishTag_" + id, GIT_EXECUTOR, task -> {
+                task.dependsOn(commitTask);
+                task.git.set(gitSetupTask.output);
+                task.worktree.set(worktree.git());
+                task.tags.set(List.of("temp/" + branchName));
+            });
+            gitTagAllBarrier.dependsOn(publishTag);
+        } else {
+            gitTagAllBarrier.dependsOn(commitTask);
+        }
+    }
+
+    private record Worktree(TaskOutput<Git> git, ExecutorService executor, Path dir, boolean pooled) { }
+
+    /**
+     * Delete decompiled outputs which are no longer useful.
+     * <p>
+     * Once finalized, a version's decompiled sources live on its branch. The output on disk is only
+     * read again as the previous output of an incremental decompile, for which only the newest version
+     * of each type is a candidate. Keeping them all would grow to tens of GB across every version.
+     */
+    private static void pruneDecompiledOutputs(Path versionsDir, ProcessableVersionSet versionSet) throws IOException {
+        Map<String, String> newestOfType = new HashMap<>();
+        for (String id : versionSet.allVersions()) {
+            newestOfType.put(versionSet.getManifest(id).type(), id);
+        }
+        var keep = Set.copyOf(newestOfType.values());
+        for (String id : versionSet.allVersions()) {
+            if (keep.contains(id)) continue;
+
+            var output = versionsDir.resolve(id).resolve("decompiled");
+            if (Files.exists(output)) {
+                LOGGER.info("Pruning decompiled output of {}.", id);
+                DecompileTask.deleteOutput(output);
+            }
+        }
+    }
+
+    private static void runLocalMatrix(JobMatrix matrix, Path workDir, Path worktreesDir, Path repoDir, SetupGitRepoTask gitSetupTask, List<String> forwardedArgs) throws IOException, InterruptedException {
+        var jobs = matrix.jobs();
+        List<Task> prepareTasks = new ArrayList<>();
+        for (int i = 0; i < jobs.size(); i++) {
+            var jobDir = worktreesDir.resolve("job-" + i);
+            prepareTasks.add(PrepareWorktreeTask.create("prepareWorktree_" + i, GIT_EXECUTOR, task -> {
+                task.git.set(gitSetupTask.output);
+                task.worktreeDir.set(jobDir.resolve("repo"));
+            }));
+        }
+        Task.runTasks(prepareTasks);
+
+        var java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        List<Process> processes = new ArrayList<>();
+        for (int i = 0; i < jobs.size(); i++) {
+            var job = jobs.get(i);
+            var jobDir = worktreesDir.resolve("job-" + i);
+            var requestFile = jobDir.resolve("request.json");
+            Files.writeString(requestFile, job.request());
+
+            // Workers push their temp tags straight into our repository.
+            List<String> command = new ArrayList<>(List.of(
+                    java,
+                    "-cp", System.getProperty("java.class.path"),
+                    SnowShovel.class.getName(),
+                    "--gitRepo", repoDir.toString(),
+                    "--gitPush",
+                    "--worktree-dir", jobDir.toString(),
+                    "--run-matrix", requestFile.toString()
+            ));
+            command.addAll(forwardedArgs);
+            var process = new ProcessBuilder(command)
+                    .directory(workDir.toFile())
+                    .redirectErrorStream(true)
+                    .redirectOutput(jobDir.resolve("output.log").toFile())
+                    .start();
+            LOGGER.info("Started {} as process {}, logging to {}", job.name(), process.pid(), jobDir.resolve("output.log"));
+            processes.add(process);
+        }
+
+        List<String> failed = new ArrayList<>();
+        for (int i = 0; i < processes.size(); i++) {
+            int exit = processes.get(i).waitFor();
+            if (exit != 0) {
+                failed.add(jobs.get(i).name() + " (exit " + exit + ")");
+            }
+        }
+        if (!failed.isEmpty()) {
+            throw new RuntimeException("Local matrix jobs failed: " + String.join(", ", failed));
+        }
+    }
+
+    /**
+     * Rebuild the command line arguments for the given options, as they were specified.
+     */
+    private static List<String> forwardArgs(OptionSet optSet, List<OptionSpec<?>> opts) {
+        List<String> args = new ArrayList<>();
+        for (OptionSpec<?> opt : opts) {
+            if (!optSet.has(opt)) continue;
+
+            var name = "--" + opt.options().iterator().next();
+            var values = optSet.valuesOf(opt);
+            if (values.isEmpty()) {
+                args.add(name);
+            }
+            for (Object value : values) {
+                args.add(name);
+                args.add(String.valueOf(value));
+            }
+        }
+        return args;
+    }
+
+    private static void runWorker(
+            WorkerClient client,
+            HttpCache http,
+            Executor ioExecutor,
+            JdkProvider jdkProvider,
+            Path toolsDir,
+            Path librariesDir,
+            Path versionsDir,
+            Path repoDir,
+            ProcessableVersionSet versionSet,
+            SetupGitRepoTask gitSetupTask,
+            int worktreeCount,
+            boolean incremental,
+            int verifySample,
+            boolean shouldPush,
+            String repoUrl
+    ) throws IOException, InterruptedException {
+        var heartbeatExecutor = Executors.newSingleThreadScheduledExecutor(new BasicThreadFactory.Builder()
+                .namingPattern("Heartbeat Thread")
+                .daemon(true)
+                .build()
+        );
+        try (heartbeatExecutor) {
+            while (true) {
+                var lease = client.lease();
+                if (lease == null) break;
+
+                // Heartbeat often enough that one or two may fail without the lease expiring.
+                long period = Math.max(1, lease.timeoutMillis() / 3);
+                var lost = new AtomicBoolean();
+                var heartbeat = heartbeatExecutor.scheduleAtFixedRate(() -> {
+                    if (lost.get()) return;
+                    try {
+                        if (!client.heartbeat(lease)) {
+                            LOGGER.warn("Lease {} was lost, it has been handed to another worker. Its result will not be reported.", lease.id());
+                            lost.set(true);
+                        }
+                    } catch (IOException ex) {
+                        LOGGER.warn("Failed to heartbeat lease {}.", lease.id(), ex);
+                    }
+                }, period, period, TimeUnit.MILLISECONDS);
+
+                boolean success = false;
+                try {
+                    runStage2(http, ioExecutor, jdkProvider, toolsDir, librariesDir, versionsDir, repoDir, lease.request(), versionSet, gitSetupTask, worktreeCount, incremental, verifySample, shouldPush, repoUrl);
+                    success = true;
+                } catch (Exception ex) {
+                    LOGGER.error("Failed to process lease {}.", lease.id(), ex);
+                } finally {
+                    heartbeat.cancel(false);
+                }
+
+                // Stage 2 can't be interrupted part way, the work finishes, but a lost lease is someone else's to report.
+                if (lost.get()) continue;
+                if (success) {
+                    client.complete(lease);
+                } else {
+                    client.fail(lease);
+                }
+            }
+        }
+        LOGGER.info("Coordinator has no more work.");
     }
 
     private static void runStage3(
-            HttpEngine http,
+            HttpCache http,
+            Path versionsDir,
             Path repoDir,
             RunRequest runRequest,
             ProcessableVersionSet versionSet,
             SetupGitRepoTask gitSetupTask,
             boolean shouldPush,
+            boolean shouldMaintain,
             String repoUrl
     ) throws IOException {
         // Stage 3
-        var fastForwardBarrier = new BarrierTask("fastForwardBarrier");
         List<String> tagsToDelete = new ArrayList<>();
+        Map<String, String> branchTags = new LinkedHashMap<>();
         for (var version : runRequest.versions()) {
             var manifest = versionSet.getManifest(version.id());
             var branch = manifest.computeBranchName();
             var tag = "temp/" + branch;
-            var fastForward = FastForwardTask.create("fastForward_" + version.id(), GIT_EXECUTOR, task -> {
-                task.git.set(gitSetupTask.output);
-                task.branch.set(branch);
-                task.tag.set(Optional.of(tag));
-            });
+            branchTags.put(branch, tag);
             tagsToDelete.add(tag);
-            fastForwardBarrier.dependsOn(fastForward);
         }
 
+        var fastForwardBranches = FastForwardBranchesTask.create("fastForwardBranches", GIT_EXECUTOR, task -> {
+            task.git.set(gitSetupTask.output);
+            task.branchTags.set(branchTags);
+        });
+
         var fastForwardMain = FastForwardTask.create("fastForwardMain", GIT_EXECUTOR, task -> {
-            task.dependsOn(fastForwardBarrier);
+            task.dependsOn(fastForwardBranches);
             task.git.set(gitSetupTask.output);
             task.branch.set("main");
             task.tag.set(Optional.of("temp/main"));
@@ -506,6 +1081,15 @@ public class SnowShovel {
             task.versionSet.set(versionSet);
         });
 
+        // Tag messages hold the stage timings for each version, grab them before the tags are deleted.
+        var collectTimings = CollectTimingsTask.create("collectTimings", GIT_EXECUTOR, task -> {
+            task.dependsOn(fastForwardMain);
+            task.git.set(gitSetupTask.output);
+            task.runRequest.set(runRequest);
+            task.versionSet.set(versionSet);
+            task.timingsFile.set(repoDir.resolve("cache/timings.json"));
+        });
+
         var genRootProject = GenerateRootProjectTask.create("genRootProject", ForkJoinPool.commonPool(), task -> {
             task.dependsOn(fastForwardMain);
             task.projectDir.set(repoDir);
@@ -516,7 +1100,9 @@ public class SnowShovel {
 
         var amendMain = CommitTask.create("amendMain", GIT_EXECUTOR, task -> {
             task.dependsOn(genRootProject);
+            task.dependsOn(collectTimings);
             task.git.set(gitSetupTask.output);
+            task.backends.set(gitSetupTask.backends);
             task.amend.set(true);
         });
 
@@ -526,6 +1112,7 @@ public class SnowShovel {
         if (shouldPush) {
             var pushTask = PushAllTask.create("pushAllBranches", GIT_EXECUTOR, task -> {
                 task.git.set(gitSetupTask.output);
+                task.backends.set(gitSetupTask.backends);
                 task.dependsOn(amendMain);
                 task.branches.set(true);
             });
@@ -551,7 +1138,7 @@ public class SnowShovel {
             var discordReport = DiscordReportTask.create("discordReport", ForkJoinPool.commonPool(), task -> {
                 task.webhook.set(DISCORD_WEBHOOK);
                 task.gitRepoUrl.set(repoUrl);
-                task.http.set(http);
+                task.http.set(http.engine());
                 task.versions.set(versionSet.allVersions());
                 task.postDefs.set(extractStats.testStats);
                 task.comparisons.set(genComparisons.comparisons);
@@ -559,20 +1146,29 @@ public class SnowShovel {
             discordPostBarrier.dependsOn(discordReport);
         }
 
-        Task.runTasks(pushBarrier, deleteTags, discordPostBarrier);
+        var maintenanceBarrier = new BarrierTask("maintenanceBarrier");
+        if (shouldMaintain) {
+            // Done last, nobody is waiting on it.
+            var maintenance = MaintenanceTask.create("gitMaintenance", GIT_EXECUTOR, task -> {
+                task.dependsOn(deleteTags);
+                task.git.set(gitSetupTask.output);
+            });
+            maintenanceBarrier.dependsOn(maintenance);
+        }
+
+        Task.runTasks(pushBarrier, deleteTags, discordPostBarrier, maintenanceBarrier);
+        pruneDecompiledOutputs(versionsDir, versionSet);
         if (DISCORD_WEBHOOK != null) {
             new DiscordWebhook(DISCORD_WEBHOOK)
                     .setContent("SnowShovel run finished, processed " + runRequest.versions().size() + " versions.")
-                    .execute(http);
+                    .execute(http.engine());
         }
     }
 
     private static SetupJdkTask getJdkTask(JdkProvider jdkProvider, JavaVersion javaVersion) {
-        return JDK_TASKS.computeIfAbsent(javaVersion, e ->
-                SetupJdkTask.create("provisionJdk_" + javaVersion.shortString, DOWNLOAD_EXECUTOR, jdkProvider, task -> {
-                    task.javaVersion.set(javaVersion);
-                })
-        );
+        return SetupJdkTask.create("provisionJdk_" + javaVersion.shortString, DOWNLOAD_EXECUTOR, jdkProvider, task -> {
+            task.javaVersion.set(javaVersion);
+        });
     }
 
     private static JavaVersion pickDecompilerJavaVersion(JavaVersion a, JavaVersion b) {
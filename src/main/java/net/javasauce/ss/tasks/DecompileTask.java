@@ -3,6 +3,10 @@ package net.javasauce.ss.tasks;
 import com.google.gson.Gson;
 import net.covers1624.jdkutils.JavaInstall;
 import net.covers1624.quack.collection.FastStream;
+import net.javasauce.ss.tasks.report.TestCaseDef;
+import net.javasauce.ss.util.DeleteHierarchyVisitor;
+import net.javasauce.ss.util.IncrementalDecompile;
+import net.javasauce.ss.util.ProcessLock;
 import net.javasauce.ss.util.ProcessUtils;
 import net.javasauce.ss.util.task.Task;
 import net.javasauce.ss.util.task.TaskInput;
@@ -11,13 +15,22 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
 import java.util.concurrent.Executor;
 import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
+ * Runs the decompiler and its test harness over a jar.
+ * <p>
+ * The output is cached against everything which can affect the decompiled sources, so
+ * re-runs after a crash, or after changes to SnowShovel itself, skip the decompiler.
+ * <p>
+ * Optionally decompiles incrementally against a {@link #previous} jar and output, see {@link IncrementalDecompile}.
+ * <p>
  * Created by covers1624 on 1/21/25.
  */
 public class DecompileTask extends Task {
@@ -26,17 +39,58 @@ public class DecompileTask extends Task {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(DecompileTask.class);
 
+    private static final String CACHE_SUFFIX = "_decompile";
+
+    /**
+     * The directory within the output the decompiled sources are written to.
+     */
+    public static final String SOURCES = "src/main/java";
+    /**
+     * The file within the output the decompiler test stats are written to.
+     */
+    public static final String TEST_STATS = "src/main/resources/test_stats.json";
+    /**
+     * The default number of re-used classes to verify when decompiling incrementally.
+     */
+    public static final int DEFAULT_VERIFY_SAMPLE = 10;
+
     public final TaskInput<Path> javaRuntimeHome = input("javaRuntimeHome");
     public final TaskInput<Path> javaReferenceHome = input("javaReferenceHome");
     public final TaskInput<PrepareToolTask.PreparedTool> tool = input("tool");
     public final TaskInput.Collection<Path> libraries = inputCollection("libraries");
     public final TaskInput<Path> inputJar = input("inputJar");
     public final TaskInput<List<String>> javacArgs = input("javacArgs");
+    /**
+     * A previous jar and its decompiled output. When set, only classes which changed
+     * since the previous jar, and their dependents, are decompiled.
+     */
+    public final TaskInput<Optional<Previous>> previous = optionalInput("previous");
+    /**
+     * The number of re-used classes to check against a fresh decompile, when decompiling incrementally.
+     * If any differ, the whole jar is decompiled instead.
+     */
+    public final TaskInput<Integer> verifySample = input("verifySample", DEFAULT_VERIFY_SAMPLE);
 
     public final TaskOutput<Path> output = output("output");
+    public final TaskOutput<Optional<TestCaseDef>> testStats = computedOutput("testStats");
 
     private DecompileTask(String name, Executor executor) {
         super(name, executor);
+
+        withFileLock(output);
+        withCaching(output, CACHE_SUFFIX, cache -> {
+            cache.add(inputJar);
+            cache.add(libraries);
+            cache.add(tool, PrepareToolTask.PreparedTool::toolJar);
+            // The release file contains the exact version and vendor of the JDK.
+            cache.add(javaRuntimeHome, e -> e.resolve("release"));
+            cache.add(javaReferenceHome, e -> e.resolve("release"));
+            cache.add(javacArgs);
+            // Every file in the output, so we re-run if any are deleted or modified.
+            cache.addTree(output.get());
+            cache.add(previous, e -> e.map(Previous::jar));
+            cache.add(previous, e -> e.map(p -> p.output().resolve(TEST_STATS)));
+        });
     }
 
     public static DecompileTask create(String name, Executor executor, Consumer<DecompileTask> cons) {
@@ -48,7 +102,92 @@ public class DecompileTask extends Task {
     @Override
     protected void execute() throws Throwable {
         var output = this.output.get();
+        if (Files.exists(output)) {
+            Files.walkFileTree(output, new DeleteHierarchyVisitor());
+        }
+
+        var previous = this.previous.get().orElse(null);
+        Set<String> reused = null;
+        if (previous != null && Files.exists(previous.jar())) {
+            // Another process may be wiping and re-decompiling the previous output, hold its lock whilst we read it.
+            try (var lock = ProcessLock.acquire(lockFile(previous.output()))) {
+                if (isComplete(previous.output())) {
+                    reused = executeIncremental(previous);
+                }
+            }
+        }
+        if (reused == null) {
+            runDecompiler(inputJar.get(), output);
+        } else if (verifySample.get() > 0 && !reused.isEmpty() && !verify(reused)) {
+            Files.walkFileTree(output, new DeleteHierarchyVisitor());
+            runDecompiler(inputJar.get(), output);
+        }
+
+        restoreComputedOutputs();
+    }
+
+    // Returns the classes re-used from the previous output.
+    private Set<String> executeIncremental(Previous previous) throws IOException {
+        var output = this.output.get();
+        var plan = IncrementalDecompile.plan(previous.jar(), inputJar.get());
+        LOGGER.info(
+                "Decompiling incrementally from {}, {} classes changed, {} dependents, {} re-used.",
+                previous.output(),
+                plan.changed(),
+                plan.decompile().size() - plan.changed(),
+                plan.reuse().size()
+        );
+
+        if (!plan.decompile().isEmpty()) {
+            var subsetJar = output.resolveSibling(output.getFileName() + "_incremental.jar");
+            IncrementalDecompile.writeSubsetJar(inputJar.get(), plan.decompile(), subsetJar);
+            runDecompiler(subsetJar, output);
+            Files.delete(subsetJar);
+        }
+        IncrementalDecompile.mergePrevious(previous.output(), output, plan.reuse());
+        return plan.reuse();
+    }
+
+    // Decompile a sample of the re-used classes from scratch, they must match what we re-used.
+    private boolean verify(Set<String> reused) throws IOException {
+        var output = this.output.get();
+        List<String> sample = new ArrayList<>(reused);
+        Collections.shuffle(sample, new Random(inputJar.get().toString().hashCode()));
+        sample = sample.subList(0, Math.min(verifySample.get(), sample.size()));
 
+        var verifyDir = output.resolveSibling(output.getFileName() + "_verify");
+        var verifyJar = output.resolveSibling(output.getFileName() + "_verify.jar");
+        if (Files.exists(verifyDir)) {
+            Files.walkFileTree(verifyDir, new DeleteHierarchyVisitor());
+        }
+        IncrementalDecompile.writeSubsetJar(inputJar.get(), Set.copyOf(sample), verifyJar);
+        runDecompiler(verifyJar, verifyDir);
+
+        List<String> mismatches = new ArrayList<>();
+        var verifySources = verifyDir.resolve(SOURCES);
+        if (Files.exists(verifySources)) {
+            try (Stream<Path> files = Files.walk(verifySources)) {
+                for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+                    var relative = verifySources.relativize(file);
+                    var merged = output.resolve(SOURCES).resolve(relative.toString());
+                    if (Files.notExists(merged) || Files.mismatch(file, merged) != -1) {
+                        mismatches.add(relative.toString());
+                    }
+                }
+            }
+        }
+        Files.walkFileTree(verifyDir, new DeleteHierarchyVisitor());
+        Files.delete(verifyJar);
+
+        if (!mismatches.isEmpty()) {
+            LOGGER.warn("Incremental output differs from a fresh decompile for {}, decompiling the whole jar.", mismatches);
+            return false;
+        }
+        LOGGER.info("Verified {} re-used classes against a fresh decompile.", sample.size());
+        return true;
+    }
+
+    private void runDecompiler(Path classes, Path output) {
         List<Path> libraryPath = new ArrayList<>();
         libraryPath.add(inputJar.get());
         libraryPath.addAll(libraries.get());
@@ -64,11 +203,11 @@ public class DecompileTask extends Task {
                         "-Dcoffeegrinder.testcases.library.update_defs=true",
                         "-Dcoffeegrinder.test.update=true",
                         "-Dcoffeegrinder.test.java_under_test=" + JavaInstall.getJavaExecutable(javaReferenceHome.get(), true),
-                        "-Dcoffeegrinder.test.output=" + output.resolve("src/main/java").toAbsolutePath(),
-                        "-Dcoffeegrinder.test.compile_error_output=" + output.resolve("src/main/java").toAbsolutePath(),
-                        "-Dcoffeegrinder.test.rt_diff_output=" + output.resolve("src/main/java").toAbsolutePath(),
-                        "-Dcoffeegrinder.test.stats=" + output.resolve("src/main/resources/test_stats.json").toAbsolutePath(),
-                        "-Dcoffeegrinder.test.classes=" + inputJar.get().toAbsolutePath(),
+                        "-Dcoffeegrinder.test.output=" + output.resolve(SOURCES).toAbsolutePath(),
+                        "-Dcoffeegrinder.test.compile_error_output=" + output.resolve(SOURCES).toAbsolutePath(),
+                        "-Dcoffeegrinder.test.rt_diff_output=" + output.resolve(SOURCES).toAbsolutePath(),
+                        "-Dcoffeegrinder.test.stats=" + output.resolve(TEST_STATS).toAbsolutePath(),
+                        "-Dcoffeegrinder.test.classes=" + classes.toAbsolutePath(),
                         "-Dcoffeegrinder.test.libraries=" + FastStream.of(libraryPath)
                                 .map(Path::toAbsolutePath)
                                 .map(Path::toString)
@@ -84,4 +223,40 @@ public class DecompileTask extends Task {
                 LOGGER::info
         );
     }
+
+    /**
+     * @return If the given decompiler output finished successfully, and is safe to re-use.
+     */
+    private static boolean isComplete(Path output) {
+        return Files.exists(cacheFile(output, CACHE_SUFFIX));
+    }
+
+    /**
+     * Delete a decompiled output, along with its cache file, so it's no longer re-used.
+     * <p>
+     * The output's lock is held, so it's never deleted out from under a task using it.
+     *
+     * @param output The output.
+     */
+    public static void deleteOutput(Path output) throws IOException {
+        try (var lock = ProcessLock.acquire(lockFile(output))) {
+            // The cache file goes first, a partially deleted output must never be considered complete.
+            Files.deleteIfExists(cacheFile(output, CACHE_SUFFIX));
+            if (Files.exists(output)) {
+                Files.walkFileTree(output, new DeleteHierarchyVisitor());
+            }
+        }
+    }
+
+    @Override
+    protected void restoreComputedOutputs() {
+        var testStatsFile = output.get().resolve(TEST_STATS);
+        testStats.set(Files.exists(testStatsFile) ? Optional.of(TestCaseDef.loadTestStats(testStatsFile)) : Optional.empty());
+    }
+
+    /**
+     * @param jar    The jar the previous output was decompiled from.
+     * @param output The previous output.
+     */
+    public record Previous(Path jar, Path output) { }
 }
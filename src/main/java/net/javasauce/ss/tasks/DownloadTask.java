@@ -1,13 +1,14 @@
 package net.javasauce.ss.tasks;
 
 import net.covers1624.quack.io.IOUtils;
-import net.covers1624.quack.net.HttpEngineDownloadAction;
-import net.covers1624.quack.net.httpapi.HttpEngine;
 import net.covers1624.quack.util.SneakyUtils.ThrowingConsumer;
 import net.javasauce.ss.util.Hashing;
+import net.javasauce.ss.util.HostLimiter;
+import net.javasauce.ss.util.HttpCache;
 import net.javasauce.ss.util.task.Task;
 import net.javasauce.ss.util.task.TaskInput;
 import net.javasauce.ss.util.task.TaskOutput;
+import net.javasauce.ss.util.task.TaskRegistry;
 import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -29,7 +30,7 @@ public class DownloadTask extends Task {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(DownloadTask.class);
 
-    private final HttpEngine http;
+    private final HttpCache http;
 
     public final TaskOutput<Path> output = output("output");
     public final TaskInput<String> url = input("url");
@@ -41,7 +42,7 @@ public class DownloadTask extends Task {
 
     private final List<ThrowingConsumer<Path, IOException>> mutators = new ArrayList<>();
 
-    private DownloadTask(String name, Executor executor, HttpEngine http) {
+    private DownloadTask(String name, Executor executor, HttpCache http) {
         super(name, executor);
         this.http = http;
 
@@ -51,15 +52,34 @@ public class DownloadTask extends Task {
             cache.add(downloadHash);
             cache.add(downloadLen);
             cache.add(localOverride);
+            // Whilst recording a mirror, re-run until the mirror has the file.
+            cache.add(url, http::recordedFile);
         });
+        withFileLock(output);
     }
 
-    public static DownloadTask create(String name, Executor executor, HttpEngine http, Consumer<DownloadTask> configure) {
+    public static DownloadTask create(String name, Executor executor, HttpCache http, Consumer<DownloadTask> configure) {
         var task = new DownloadTask(name, executor, http);
         configure.accept(task);
-        return task;
+        return TaskRegistry.intern(task);
     }
 
+    @Override
+    protected @Nullable Object getIdentity() {
+        // Mutators can't be compared, a mutated download is never shared.
+        if (!mutators.isEmpty()) return null;
+
+        return identityOf(url, output, downloadHash, downloadLen, localOverride);
+    }
+
+    /**
+     * Add a function to run over the file once downloaded.
+     * <p>
+     * Must be added whilst configuring the task in {@link #create}, so the task is not de-duplicated.
+     *
+     * @param mutFunc The function.
+     * @return The same task.
+     */
     public DownloadTask addMutator(ThrowingConsumer<Path, IOException> mutFunc) {
         mutators.add(mutFunc);
         return this;
@@ -76,41 +96,58 @@ public class DownloadTask extends Task {
             Files.copy(override, IOUtils.makeParents(output), StandardCopyOption.REPLACE_EXISTING);
             if (validate(output, downloadLen, downloadHash)) {
                 LOGGER.info("Using local override for download of {}", output);
+                if (downloadHash != null) {
+                    http.recordLocal(url, output);
+                }
                 return;
             }
         }
 
-        LOGGER.info("Downloading file {} to {}", output, url);
+        // The task cache may be missing, but the file is already present and valid, no need to touch the network.
+        if (downloadHash != null && Files.exists(output) && validate(output, downloadLen, downloadHash)) {
+            LOGGER.info("File {} already exists and is valid.", output);
+            http.recordLocal(url, output);
+        } else {
+            LOGGER.info("Downloading file {} to {}", output, url);
 
-        doDownload(http, url, output, downloadLen, downloadHash);
+            // Mutated files won't match what the server sent us, so can't be revalidated with a conditional request.
+            doDownload(http, url, output, downloadLen, downloadHash, mutators.isEmpty());
+        }
 
         for (ThrowingConsumer<Path, IOException> mutator : mutators) {
             mutator.accept(output);
         }
     }
 
-    private static void doDownload(HttpEngine http, String url, Path output, long downloadLen, @Nullable String downloadHash) throws IOException {
+    private static void doDownload(HttpCache http, String url, Path output, long downloadLen, @Nullable String downloadHash, boolean conditional) throws IOException {
         IOException exception = null;
+        if (!conditional) {
+            http.forget(url, output);
+        }
         for (int i = 0; i < 10; i++) {
             try {
-                new HttpEngineDownloadAction(http)
-                        .setUrl(url)
-                        .setDest(output)
-                        .setQuiet(false)
-                        .execute();
+                http.download(url, output);
 
                 if (!validate(output, downloadLen, downloadHash)) {
                     LOGGER.error("Download validations failed. File will be re-downloaded.");
+                    http.forget(url, output);
                     continue;
                 }
                 exception = null;
                 break;
             } catch (IOException ex) {
+                if (!HostLimiter.isRetryable(ex)) {
+                    if (exception != null) ex.addSuppressed(exception);
+                    throw ex;
+                }
                 if (exception == null) {
                     exception = ex;
                 } else {
                     exception.addSuppressed(ex);
                 }
+                if (i + 1 < 10) {
+                    HostLimiter.backoff(i + 1, ex);
+                }
             }
         }
         if (exception != null) {
@@ -1,11 +1,12 @@
 package net.javasauce.ss.tasks;
 
 import net.covers1624.quack.maven.MavenNotation;
-import net.covers1624.quack.net.httpapi.HttpEngine;
 import net.javasauce.ss.tasks.util.UnzipTask;
+import net.javasauce.ss.util.HttpCache;
 import net.javasauce.ss.util.task.Task;
 import net.javasauce.ss.util.task.TaskInput;
 import net.javasauce.ss.util.task.TaskOutput;
+import net.javasauce.ss.util.task.TaskRegistry;
 import org.jetbrains.annotations.Nullable;
 
 import java.nio.file.Files;
@@ -24,11 +25,12 @@ public class PrepareToolTask extends Task {
     public final TaskInput<MavenNotation> notation = input("notation");
     public final TaskInput<Path> toolDir = input("toolDir");
 
-    public final TaskOutput<PreparedTool> output = computedOutput("output");
+    // Derived rather than computed, so tasks caching against the tool jar can be checked before it is prepared.
+    public final TaskOutput<PreparedTool> output = output("output");
 
     private final TaskInput<Path> extractedDir = input("extractedDir");
 
-    private PrepareToolTask(String name, Executor executor, HttpEngine http) {
+    private PrepareToolTask(String name, Executor executor, HttpCache http) {
         super(name, executor);
 
         var downloadToolTask = DownloadTask.create(name + "_download", executor, http, task -> {
@@ -40,33 +42,40 @@ public class PrepareToolTask extends Task {
 
         var extractTask = UnzipTask.create(name + "_unzip", executor, task -> {
             task.zip.set(downloadToolTask.output);
-            task.output.deriveFrom(toolDir, notation, (t, n) ->
-                    t.resolve(n.toModulePath())
-                            .resolve(requireNonNull(n.version))
-                            .resolve(n.module + "-" + n.version));
+            task.output.deriveFrom(toolDir, notation, PrepareToolTask::computeExtractedDir);
         });
         declareCompositeTask(extractTask);
 
         extractedDir.set(extractTask.output);
+        output.deriveFrom(toolDir, notation, (t, n) -> {
+            var dir = computeExtractedDir(t, n);
+            return new PreparedTool(dir.resolve(n.withExtension("jar").toFileName()), dir);
+        });
+    }
+
+    private static Path computeExtractedDir(Path toolDir, MavenNotation notation) {
+        return toolDir.resolve(notation.toModulePath())
+                .resolve(requireNonNull(notation.version))
+                .resolve(notation.module + "-" + notation.version);
     }
 
-    public static PrepareToolTask create(String name, Executor executor, HttpEngine http, Consumer<PrepareToolTask> configure) {
+    public static PrepareToolTask create(String name, Executor executor, HttpCache http, Consumer<PrepareToolTask> configure) {
         var task = new PrepareToolTask(name, executor, http);
         configure.accept(task);
-        return task;
+        return TaskRegistry.intern(task);
     }
 
     @Override
-    protected void execute() throws Throwable {
-        var notation = this.notation.get();
-        var extractedDir = this.extractedDir.get();
-
-        Path toolJar = extractedDir.resolve(notation.withExtension("jar").toFileName());
+    protected @Nullable Object getIdentity() {
+        return identityOf(notation, toolDir);
+    }
 
-        output.set(new PreparedTool(
-                toolJar,
-                extractedDir
-        ));
+    @Override
+    protected void execute() throws Throwable {
+        var toolJar = output.get().toolJar();
+        if (Files.notExists(toolJar)) {
+            throw new IllegalStateException("Tool " + notation.get() + " does not contain " + toolJar.getFileName());
+        }
     }
 
     private static @Nullable Path findMavenLocalFile(MavenNotation notation) {
@@ -0,0 +1,175 @@
+package net.javasauce.ss.tasks;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import net.covers1624.quack.collection.FastStream;
+import net.covers1624.quack.gson.JsonUtils;
+import net.javasauce.ss.tasks.report.TestCaseState;
+import net.javasauce.ss.util.DeleteHierarchyVisitor;
+import net.javasauce.ss.util.IncrementalDecompile;
+import net.javasauce.ss.util.ProcessUtils;
+import net.javasauce.ss.util.task.Task;
+import net.javasauce.ss.util.task.TaskInput;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Re-runs the compile tests of an already decompiled project, without decompiling it again.
+ * <p>
+ * Used when only the classpath or JDK of a version changed. The sources in the project are
+ * recompiled with the reference JDK, against the libraries and the jar they were decompiled
+ * from, and the test stats in the project are updated. Classes which no longer compile drop to
+ * {@link TestCaseState#SOURCE}, classes which now compile rise to {@link TestCaseState#COMPILE}.
+ * <p>
+ * Checking the bytecode round trip needs the decompiler, those results are kept from the last
+ * decompile for classes which still compile.
+ */
+public class RetestTask extends Task {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RetestTask.class);
+
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+    private static final Pattern COMPILE_ERROR = Pattern.compile("^(.+\\.java):\\d+: error: ");
+    // javac stops before attributing anything when a file fails to parse, so errors may come in a few waves.
+    private static final int MAX_PASSES = 5;
+
+    public final TaskInput<Path> javaReferenceHome = input("javaReferenceHome");
+    public final TaskInput.Collection<Path> libraries = inputCollection("libraries");
+    public final TaskInput<Path> inputJar = input("inputJar");
+    public final TaskInput<List<String>> javacArgs = input("javacArgs");
+    public final TaskInput<Path> projectDir = input("projectDir");
+
+    private RetestTask(String name, Executor executor) {
+        super(name, executor);
+    }
+
+    public static RetestTask create(String name, Executor executor, Consumer<RetestTask> cons) {
+        RetestTask task = new RetestTask(name, executor);
+        cons.accept(task);
+        return task;
+    }
+
+    @Override
+    protected void execute() throws Throwable {
+        var projectDir = this.projectDir.get();
+        var sources = projectDir.resolve(DecompileTask.SOURCES);
+        if (Files.notExists(sources)) throw new IOException("No decompiled sources in " + projectDir);
+
+        List<Path> files;
+        try (Stream<Path> stream = Files.walk(sources)) {
+            files = stream.filter(e -> e.toString().endsWith(".java"))
+                    .map(Path::toAbsolutePath)
+                    .toList();
+        }
+
+        Set<String> failed = new HashSet<>();
+        var tempDir = Files.createTempDirectory("retest");
+        try {
+            List<Path> remaining = new ArrayList<>(files);
+            for (int i = 0; i < MAX_PASSES && !remaining.isEmpty(); i++) {
+                var errors = compile(remaining, tempDir);
+                if (errors.isEmpty()) break;
+
+                // Anything else which failed was hidden behind these, compile it again without them.
+                remaining.removeAll(errors);
+                for (Path file : errors) {
+                    failed.add(IncrementalDecompile.outputClass(sources.toAbsolutePath().relativize(file)));
+                }
+            }
+        } finally {
+            Files.walkFileTree(tempDir, new DeleteHierarchyVisitor());
+        }
+        LOGGER.info("Recompiled {} sources, {} classes failed to compile.", files.size(), failed.size());
+
+        updateTestStats(projectDir.resolve(DecompileTask.TEST_STATS), failed);
+    }
+
+    // Returns the files with compile errors.
+    private Set<Path> compile(List<Path> files, Path tempDir) throws IOException {
+        var classes = tempDir.resolve("classes");
+        if (Files.exists(classes)) {
+            Files.walkFileTree(classes, new DeleteHierarchyVisitor());
+        }
+        Files.createDirectories(classes);
+
+        // Far too many files for the command line.
+        var argFile = tempDir.resolve("sources.txt");
+        Files.write(argFile, FastStream.of(files)
+                .map(e -> "\"" + e.toString().replace("\\", "\\\\") + "\"")
+                .toList());
+
+        List<Path> classpath = new ArrayList<>();
+        classpath.add(inputJar.get());
+        classpath.addAll(libraries.get());
+
+        List<String> args = new ArrayList<>(List.of(
+                "-J-Duser.language=en",
+                "-encoding", "UTF-8",
+                "-proc:none",
+                "-implicit:none",
+                "-nowarn",
+                "-Xmaxerrs", String.valueOf(Integer.MAX_VALUE),
+                "-d", classes.toAbsolutePath().toString(),
+                "-cp", FastStream.of(classpath)
+                        .map(Path::toAbsolutePath)
+                        .map(Path::toString)
+                        .join(File.pathSeparator)
+        ));
+        args.addAll(javacArgs.get());
+        args.add("@" + argFile.toAbsolutePath());
+
+        var javac = javaReferenceHome.get().resolve("bin").resolve(File.separatorChar == '\\' ? "javac.exe" : "javac");
+        var result = ProcessUtils.runProcess(javac, args, tempDir, LOGGER::debug);
+
+        Set<Path> errors = new HashSet<>();
+        for (String line : result.output()) {
+            var matcher = COMPILE_ERROR.matcher(line);
+            if (matcher.find()) {
+                errors.add(Path.of(matcher.group(1)));
+            }
+        }
+        // 1 is compile errors, anything else is javac itself failing.
+        if (result.exitCode() != 0 && (result.exitCode() != 1 || errors.isEmpty())) {
+            throw new RuntimeException("javac failed with exit code " + result.exitCode() + ": " + String.join("\n", result.output()));
+        }
+        return errors;
+    }
+
+    private static void updateTestStats(Path stats, Set<String> failed) throws IOException {
+        if (Files.notExists(stats)) return;
+
+        var root = JsonUtils.parse(GSON, stats, JsonObject.class, StandardCharsets.UTF_8);
+        if (root == null || !root.has("cases")) return;
+
+        int dropped = 0;
+        int raised = 0;
+        for (var entry : root.getAsJsonObject("cases").entrySet()) {
+            var testCase = entry.getValue().getAsJsonObject();
+            if (testCase.has("broken") || !testCase.has("target")) continue;
+
+            var target = TestCaseState.valueOf(testCase.get("target").getAsString());
+            boolean compiles = !failed.contains(IncrementalDecompile.outputClass(Path.of(entry.getKey().replace('.', '/'))));
+            if (!compiles && target != TestCaseState.SOURCE) {
+                testCase.addProperty("target", TestCaseState.SOURCE.name());
+                dropped++;
+            } else if (compiles && target == TestCaseState.SOURCE) {
+                testCase.addProperty("target", TestCaseState.COMPILE.name());
+                raised++;
+            }
+        }
+        LOGGER.info("Updated test stats, {} classes no longer compile, {} now compile.", dropped, raised);
+        JsonUtils.write(GSON, stats, root, JsonObject.class, StandardCharsets.UTF_8);
+    }
+}
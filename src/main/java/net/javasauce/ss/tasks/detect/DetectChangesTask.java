@@ -6,12 +6,15 @@ import com.google.gson.reflect.TypeToken;
 import net.covers1624.quack.collection.FastStream;
 import net.covers1624.quack.gson.JsonUtils;
 import net.covers1624.quack.io.IOUtils;
-import net.covers1624.quack.net.httpapi.HttpEngine;
 import net.covers1624.quack.util.SneakyUtils;
 import net.javasauce.ss.SnowShovel;
+import net.javasauce.ss.util.Hashing;
+import net.javasauce.ss.util.HttpCache;
+import net.javasauce.ss.util.JarDiff;
 import net.javasauce.ss.util.ProcessableVersionSet;
 import net.javasauce.ss.util.RunRequest;
 import net.javasauce.ss.util.ToolUtils;
+import net.javasauce.ss.util.VersionManifest;
 import net.javasauce.ss.util.VersionRequest;
 import net.javasauce.ss.util.task.Task;
 import net.javasauce.ss.util.task.TaskInput;
@@ -25,10 +28,7 @@ import java.lang.reflect.Type;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.LinkedHashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.Optional;
+import java.util.*;
 import java.util.concurrent.Executor;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
@@ -49,8 +49,11 @@ public class DetectChangesTask extends Task {
             .setPrettyPrinting()
             .create();
 
-    public final TaskInput<HttpEngine> http = input("http");
+    public final TaskInput<HttpCache> http = input("http");
+    public final TaskInput<Executor> downloadExecutor = input("downloadExecutor");
     public final TaskInput<Path> cacheDir = input("cacheDir");
+    public final TaskInput<Path> manifestSnapshot = input("manifestSnapshot");
+    public final TaskInput<Path> versionsDir = input("versionsDir");
 
     public final TaskInput<List<String>> versionFilters = input("versionFilters");
     public final TaskInput<Optional<String>> decompilerOverride = optionalInput("decompilerOverride");
@@ -73,7 +76,7 @@ public class DetectChangesTask extends Task {
     protected void execute() throws Throwable {
         var versionsFile = cacheDir.get().resolve("versions.json");
         var versions = loadVersions(versionsFile);
-        ProcessableVersionSet versionSet = new ProcessableVersionSet(http.get(), cacheDir.get());
+        ProcessableVersionSet versionSet = new ProcessableVersionSet(http.get(), downloadExecutor.get(), cacheDir.get(), manifestSnapshot.get(), this::awaitTasks);
         this.versionSet.set(versionSet);
 
         RunRequest request;
@@ -142,15 +145,61 @@ public class DetectChangesTask extends Task {
 
         LOGGER.info(" The following versions changed: {}", FastStream.of(changedVersions).map(ProcessableVersionSet.ChangedVersion::id).toList());
 
+        var classChanges = diffClientJars(versionSet, changedVersions);
         return new RunRequest(
                 "New Minecraft versions or changes.",
                 chooseDecompilerVersion(versions, null),
                 FastStream.of(changedVersions)
-                        .map(e -> new VersionRequest(e.id(), e.reason() == ProcessableVersionSet.ChangeReason.NEW ? "New version: " + e.id() : "Version manifest changed."))
+                        .map(e -> new VersionRequest(
+                                e.id(),
+                                e.reason() == ProcessableVersionSet.ChangeReason.NEW ? "New version: " + e.id() : "Version manifest changed: " + String.join(", ", e.changes()),
+                                e.impact(),
+                                classChanges.get(e.id())
+                        ))
                         .toList()
         );
     }
 
+    // Diff the old and new client jar of every version whose jar was replaced.
+    // Only the central directory of each jar is needed, these are read from the local copy if it's
+    // the right jar, or with ranged requests otherwise, the jars are never downloaded here.
+    // The diff is informational, versions whose jars can't be read are left without one.
+    private Map<String, JarDiff.Stats> diffClientJars(ProcessableVersionSet versionSet, List<ProcessableVersionSet.ChangedVersion> changedVersions) {
+        Map<String, JarDiff.Stats> classChanges = new LinkedHashMap<>();
+        for (var changed : changedVersions) {
+            if (changed.previous() == null || !changed.changes().contains("client")) continue;
+
+            var id = changed.id();
+            // The last run's jar, if we have one locally.
+            var localJar = versionsDir.get().resolve(id).resolve(id + "-client.jar");
+            JarDiff diff;
+            try {
+                var localHash = Files.exists(localJar) ? Hashing.hashFile(Hashing.SHA1, localJar) : null;
+                diff = JarDiff.compute(
+                        readClientEntries(changed.previous(), localJar, localHash),
+                        readClientEntries(versionSet.getManifest(id), localJar, localHash)
+                );
+            } catch (IOException ex) {
+                LOGGER.warn("Unable to diff client jars for {}, skipping.", id, ex);
+                continue;
+            }
+            LOGGER.info(" Client jar for {} changed: {}", id, diff.stats());
+            if (!diff.added().isEmpty()) LOGGER.info("  Added: {}", diff.added());
+            if (!diff.removed().isEmpty()) LOGGER.info("  Removed: {}", diff.removed());
+            if (!diff.changed().isEmpty()) LOGGER.info("  Changed: {}", diff.changed());
+            classChanges.put(id, diff.stats());
+        }
+        return classChanges;
+    }
+
+    private SortedMap<String, JarDiff.Entry> readClientEntries(VersionManifest manifest, Path localJar, @Nullable String localHash) throws IOException {
+        var download = manifest.downloads().get("client");
+        if (download.sha1().equals(localHash)) {
+            return JarDiff.readClassEntries(localJar);
+        }
+        return JarDiff.readClassEntries(http.get(), download.url(), download.size());
+    }
+
     private @Nullable RunRequest detectDecompilerChanges(ProcessableVersionSet versionSet, Map<String, String> versions) {
         LOGGER.info("Checking for changes to Decompiler version since last run..");
 
@@ -9,14 +9,16 @@ import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.ListBranchCommand;
 import org.eclipse.jgit.api.MergeCommand;
 import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.internal.storage.file.FileRepository;
 import org.eclipse.jgit.lib.*;
+import org.eclipse.jgit.revwalk.RevTag;
 import org.eclipse.jgit.revwalk.RevWalk;
-import org.eclipse.jgit.transport.PushResult;
-import org.eclipse.jgit.transport.RemoteRefUpdate;
+import org.eclipse.jgit.transport.ReceiveCommand;
 import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.io.IOException;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
@@ -24,6 +26,7 @@ import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Executor;
 
@@ -35,6 +38,7 @@ public abstract class AbstractGitTask extends Task {
     private final Logger LOGGER = LoggerFactory.getLogger(getClass());
 
     public final TaskInput<Git> git = input("git");
+    public final TaskInput<GitBackends> backends = input("backends", GitBackends.JGIT);
 
     protected AbstractGitTask(String name, Executor executor) {
         super(name, executor);
@@ -66,25 +70,14 @@ public abstract class AbstractGitTask extends Task {
                 .call();
     }
 
-    protected void stageChanges() throws GitAPIException {
+    protected void stageChanges() throws IOException {
         LOGGER.info("Staging changes.");
-        git.get().add()
-                .addFilepattern(".")
-                .call();
-        git.get().add()
-                .addFilepattern(".")
-                .setUpdate(true)
-                .call();
+        backends.get().stage().stageAll(git.get());
     }
 
-    protected void commitChanges(String message) throws GitAPIException {
+    protected void commitChanges(String message) throws IOException {
         LOGGER.info("Committing changes with message {}", message);
-        git.get().commit()
-                .setAuthor("SnowShovel", "snowshovel@javasauce.net")
-                .setCommitter("SnowShovel", "snowshovel@javasauce.net")
-                .setAllowEmpty(true)
-                .setMessage(message)
-                .call();
+        backends.get().commit().commit(git.get(), message, false);
     }
 
     protected void amendChanges(@Nullable String message) {
@@ -93,61 +86,54 @@ public abstract class AbstractGitTask extends Task {
             message = getCommitMessage(Constants.HEAD);
         }
         try {
-            git.get().commit()
-                    .setAmend(true)
-                    .setMessage(message)
-                    .call();
-        } catch (GitAPIException ex) {
+            backends.get().commit().commit(git.get(), message, true);
+        } catch (IOException ex) {
             throw new RuntimeException("Failed to amend changes.", ex);
         }
     }
 
     protected void createTag(String tag) throws GitAPIException {
+        createTag(tag, null);
+    }
+
+    protected void createTag(String tag, @Nullable String message) throws GitAPIException {
         LOGGER.info("Creating tag {}", tag);
         git.get().tag()
                 .setName(tag)
+                .setMessage(message)
                 .setForceUpdate(true)
                 .call();
     }
 
-    protected void pushAllBranches() throws GitAPIException {
-        var results = git.get().push()
-                .setRemote("origin")
-                .setPushAll()
-                .setProgressMonitor(new TextProgressMonitor())
-                .call();
-        validatePush(results);
+    protected @Nullable String getTagMessage(String tag) throws IOException {
+        var repo = git.get().getRepository();
+        var ref = repo.findRef(Constants.R_TAGS + tag);
+        if (ref == null) return null;
+
+        try (RevWalk walk = new RevWalk(repo)) {
+            if (walk.parseAny(ref.getObjectId()) instanceof RevTag revTag) {
+                return revTag.getFullMessage();
+            }
+            return null;
+        }
     }
 
-    protected void pushAllTags() throws GitAPIException {
+    protected void pushAllBranches() throws IOException {
+        backends.get().push().pushBranches(git.get());
+    }
+
+    protected void pushAllTags() throws IOException {
         LOGGER.info("Pushing all tags...");
-        var results = git.get().push()
-                .setRemote("origin")
-                .setForce(true)
-                .setPushTags()
-                .setProgressMonitor(new TextProgressMonitor())
-                .call();
-        validatePush(results);
+        backends.get().push().pushTags(git.get());
     }
 
-    private static void validatePush(Iterable<PushResult> results) {
-        var errors = FastStream.of(results)
-                .flatMap(PushResult::getRemoteUpdates)
-                .filter(e -> e.getStatus() != RemoteRefUpdate.Status.OK && e.getStatus() != RemoteRefUpdate.Status.UP_TO_DATE)
-                .map(e -> new RuntimeException(
-                        "Failed to push %s to %s failed: %s %s".formatted(
-                                e.getSrcRef(),
-                                e.getRemoteName(),
-                                e.getStatus(),
-                                e.getMessage()))
-                )
-                .toList();
-        if (!errors.isEmpty()) {
-            throw FastStream.of(errors).fold(new RuntimeException("Failed to push."), (a, b) -> {
-                a.addSuppressed(b);
-                return a;
-            });
-        }
+    /**
+     * Get the directory objects are stored in for the given repository.
+     * <p>
+     * This is not always inside the git directory, see {@link SetupPooledWorktreeTask}.
+     */
+    protected static File getObjectsDirectory(Repository repo) {
+        return ((FileRepository) repo).getObjectsDirectory();
     }
 
     protected void wipeCheckedOutFiles() throws IOException {
@@ -257,6 +243,33 @@ public abstract class AbstractGitTask extends Task {
         }
     }
 
+    /**
+     * Apply the given ref updates in a single atomic transaction, without touching the working tree.
+     *
+     * @param commands      The updates.
+     * @param reflogMessage The message to put in the reflog.
+     */
+    protected void updateRefsAtomically(List<ReceiveCommand> commands, String reflogMessage) throws IOException {
+        if (commands.isEmpty()) return;
+
+        var repo = git.get().getRepository();
+        var batch = repo.getRefDatabase().newBatchUpdate()
+                .setAtomic(true)
+                .setRefLogMessage(reflogMessage, false)
+                .addCommand(commands);
+        try (RevWalk walk = new RevWalk(repo)) {
+            batch.execute(walk, NullProgressMonitor.INSTANCE);
+        }
+
+        var failed = FastStream.of(commands)
+                .filter(e -> e.getResult() != ReceiveCommand.Result.OK)
+                .map(e -> e.getRefName() + " " + e.getResult() + (e.getMessage() != null ? " " + e.getMessage() : ""))
+                .toList();
+        if (!failed.isEmpty()) {
+            throw new RuntimeException("Failed to update refs: " + String.join(", ", failed));
+        }
+    }
+
     protected void fastForwardBranch(String commit) throws IOException, GitAPIException {
         LOGGER.info("Fast-Forwarding to {}", commit);
         var git = this.git.get();
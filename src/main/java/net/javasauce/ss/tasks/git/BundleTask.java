@@ -0,0 +1,69 @@
+package net.javasauce.ss.tasks.git;
+
+import net.covers1624.quack.io.IOUtils;
+import net.javasauce.ss.util.task.TaskInput;
+import net.javasauce.ss.util.task.TaskOutput;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.TextProgressMonitor;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.transport.BundleWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * Writes the given tags into a git bundle.
+ * <p>
+ * The parents of each tagged commit are assumed to already exist wherever the bundle
+ * is fetched, so the bundle only contains the new commits, as a thin pack.
+ */
+public class BundleTask extends AbstractGitTask {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BundleTask.class);
+
+    public final TaskInput<List<String>> tags = input("tags");
+    public final TaskOutput<Path> output = output("output");
+
+    private BundleTask(String name, Executor executor) {
+        super(name, executor);
+    }
+
+    public static BundleTask create(String name, Executor executor, Consumer<BundleTask> cons) {
+        var task = new BundleTask(name, executor);
+        cons.accept(task);
+        return task;
+    }
+
+    @Override
+    protected void execute() throws Throwable {
+        var repo = git.get().getRepository();
+        var output = this.output.get();
+
+        var writer = new BundleWriter(repo);
+        try (RevWalk walk = new RevWalk(repo)) {
+            for (String tag : tags.get()) {
+                var ref = repo.exactRef(Constants.R_TAGS + tag);
+                if (ref == null) throw new RuntimeException("Tag " + tag + " does not exist.");
+
+                writer.include(ref);
+                RevCommit commit = walk.parseCommit(ref.getObjectId());
+                for (RevCommit parent : commit.getParents()) {
+                    walk.parseHeaders(parent);
+                    writer.assume(parent);
+                }
+            }
+        }
+
+        LOGGER.info("Writing bundle of {} tags to {}", tags.get().size(), output);
+        try (OutputStream os = Files.newOutputStream(IOUtils.makeParents(output))) {
+            writer.writeBundle(new TextProgressMonitor(), os);
+        }
+    }
+}
@@ -1,7 +1,17 @@
 package net.javasauce.ss.tasks.git;
 
 import net.javasauce.ss.util.task.TaskInput;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.jetbrains.annotations.Nullable;
 
+import java.io.IOException;
+import java.util.EnumSet;
+import java.util.Optional;
 import java.util.concurrent.Executor;
 import java.util.function.Consumer;
 
@@ -12,6 +22,10 @@ public class CheckoutBranchTask extends AbstractGitTask {
 
     public final TaskInput<String> branch = input("branch");
     public final TaskInput<Boolean> clean = input("clean", false);
+    /**
+     * The repository to take the branch's current head from, when checking out in a pooled worktree.
+     */
+    public final TaskInput<Optional<Git>> upstream = optionalInput("upstream");
 
     private CheckoutBranchTask(String name, Executor executor) {
         super(name, executor);
@@ -25,9 +39,58 @@ public class CheckoutBranchTask extends AbstractGitTask {
 
     @Override
     protected void execute() throws Throwable {
+        var upstream = this.upstream.get().orElse(null);
+        if (upstream != null) {
+            syncBranch(upstream, branch.get());
+        }
         checkoutOrCreateBranch(branch.get());
         if (clean.get()) {
             wipeCheckedOutFiles();
         }
     }
+
+    /**
+     * Find the given branch in the given repository, either locally or as tracked from origin.
+     *
+     * @param repo   The repository.
+     * @param branch The branch name.
+     * @return The branch ref, or {@code null} if it does not exist.
+     */
+    public static @Nullable Ref findBranch(Repository repo, String branch) throws IOException {
+        var ref = repo.exactRef(Constants.R_HEADS + branch);
+        if (ref == null) {
+            ref = repo.exactRef(Constants.R_REMOTES + "origin/" + branch);
+        }
+        return ref;
+    }
+
+    private void syncBranch(Git upstream, String branch) throws IOException, GitAPIException {
+        var git = this.git.get();
+        var repo = git.getRepository();
+        var upstreamRepo = upstream.getRepository();
+
+        var upstreamRef = findBranch(upstreamRepo, branch);
+        var local = repo.exactRef(Constants.R_HEADS + branch);
+        if (upstreamRef == null && local == null) return;
+        if (upstreamRef != null && local != null && upstreamRef.getObjectId().equals(local.getObjectId())) return;
+
+        // Detach, so we are free to move or delete the branch.
+        var head = repo.resolve(Constants.HEAD);
+        if (head != null && branch.equals(repo.getBranch())) {
+            git.checkout().setName(head.name()).call();
+        }
+
+        var update = repo.updateRef(Constants.R_HEADS + branch);
+        update.setForceUpdate(true);
+        RefUpdate.Result result;
+        if (upstreamRef == null) {
+            result = update.delete();
+        } else {
+            update.setNewObjectId(upstreamRef.getObjectId());
+            result = update.update();
+        }
+        if (!EnumSet.of(RefUpdate.Result.NEW, RefUpdate.Result.FORCED, RefUpdate.Result.FAST_FORWARD, RefUpdate.Result.NO_CHANGE).contains(result)) {
+            throw new IOException("Failed to sync branch " + branch + " from upstream: " + result);
+        }
+    }
 }
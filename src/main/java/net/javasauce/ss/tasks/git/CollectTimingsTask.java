@@ -0,0 +1,58 @@
+package net.javasauce.ss.tasks.git;
+
+import net.javasauce.ss.util.ProcessableVersionSet;
+import net.javasauce.ss.util.RunRequest;
+import net.javasauce.ss.util.VersionTimings;
+import net.javasauce.ss.util.task.TaskInput;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Path;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * Collects the stage timings recorded in each version's temp tag message
+ * into the timings file, for use when balancing the next matrix.
+ * <p>
+ * Must run before the temp tags are deleted.
+ */
+public class CollectTimingsTask extends AbstractGitTask {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CollectTimingsTask.class);
+
+    public final TaskInput<RunRequest> runRequest = input("runRequest");
+    public final TaskInput<ProcessableVersionSet> versionSet = input("versionSet");
+    public final TaskInput<Path> timingsFile = input("timingsFile");
+
+    private CollectTimingsTask(String name, Executor executor) {
+        super(name, executor);
+    }
+
+    public static CollectTimingsTask create(String name, Executor executor, Consumer<CollectTimingsTask> cons) {
+        var task = new CollectTimingsTask(name, executor);
+        cons.accept(task);
+        return task;
+    }
+
+    @Override
+    protected void execute() throws Throwable {
+        var versionSet = this.versionSet.get();
+        var timingsFile = this.timingsFile.get();
+        var timings = VersionTimings.load(timingsFile);
+
+        int collected = 0;
+        for (var version : runRequest.get().versions()) {
+            var branch = versionSet.getManifest(version.id()).computeBranchName();
+            var message = getTagMessage("temp/" + branch);
+            if (message == null || message.isBlank()) continue;
+
+            timings.record(version.id(), VersionTimings.fromJson(message));
+            collected++;
+        }
+        LOGGER.info("Collected timings for {} versions.", collected);
+        if (collected != 0) {
+            timings.save(timingsFile);
+        }
+    }
+}
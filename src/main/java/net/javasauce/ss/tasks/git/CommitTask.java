@@ -1,7 +1,12 @@
 package net.javasauce.ss.tasks.git;
 
+import net.javasauce.ss.util.VersionTimings;
+import net.javasauce.ss.util.task.Task;
 import net.javasauce.ss.util.task.TaskInput;
+import org.jetbrains.annotations.Nullable;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.Executor;
 import java.util.function.Consumer;
@@ -14,6 +19,11 @@ public class CommitTask extends AbstractGitTask {
     public final TaskInput<Boolean> amend = input("amend", false);
     public final TaskInput<Optional<String>> commitMessage = optionalInput("commitMessage");
     public final TaskInput<Optional<String>> tagName = optionalInput("tagName");
+    /**
+     * Tasks to record the execution time of in the tag message, by stage name.
+     * The time taken to commit is recorded as {@link VersionTimings#STAGE_COMMIT}.
+     */
+    public final TaskInput<Map<String, Task>> timedTasks = input("timedTasks", Map.of());
 
     private CommitTask(String name, Executor executor) {
         super(name, executor);
@@ -27,6 +37,7 @@ public class CommitTask extends AbstractGitTask {
 
     @Override
     protected void execute() throws Throwable {
+        long start = System.nanoTime();
         stageChanges();
         if (amend.get()) {
             amendChanges(commitMessage.get().orElse(null));
@@ -36,7 +47,23 @@ public class CommitTask extends AbstractGitTask {
 
         var tag = tagName.get().orElse(null);
         if (tag != null) {
-            createTag(tag);
+            createTag(tag, buildTimings((System.nanoTime() - start) / 1_000_000));
         }
     }
+
+    private @Nullable String buildTimings(long commitMillis) {
+        var timedTasks = this.timedTasks.get();
+        if (timedTasks.isEmpty()) return null;
+
+        Map<String, Long> stages = new LinkedHashMap<>();
+        timedTasks.forEach((stage, task) -> {
+            var duration = task.getDuration();
+            // Skipped tasks didn't cost anything this run, don't record that as their cost.
+            if (duration != null) {
+                stages.put(stage, duration.toMillis());
+            }
+        });
+        stages.put(VersionTimings.STAGE_COMMIT, commitMillis);
+        return VersionTimings.toJson(stages);
+    }
 }
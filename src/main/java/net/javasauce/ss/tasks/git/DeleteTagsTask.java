@@ -2,8 +2,12 @@ package net.javasauce.ss.tasks.git;
 
 import net.covers1624.quack.collection.FastStream;
 import net.javasauce.ss.util.task.TaskInput;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.transport.ReceiveCommand;
 import org.eclipse.jgit.transport.RefSpec;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Executor;
 import java.util.function.Consumer;
@@ -37,9 +41,14 @@ public class DeleteTagsTask extends AbstractGitTask {
         if (!local && !remote) throw new IllegalArgumentException("Expected one or both of local/remote.");
 
         if (local) {
-            git.tagDelete()
-                    .setTags(tagNames.toArray(String[]::new))
-                    .call();
+            var repo = git.getRepository();
+            List<ReceiveCommand> commands = new ArrayList<>();
+            for (String tag : tagNames) {
+                var ref = repo.exactRef(Constants.R_TAGS + tag);
+                if (ref == null) continue;
+                commands.add(new ReceiveCommand(ref.getObjectId(), ObjectId.zeroId(), ref.getName()));
+            }
+            updateRefsAtomically(commands, "delete tags");
         }
         if (remote) {
             git.push()
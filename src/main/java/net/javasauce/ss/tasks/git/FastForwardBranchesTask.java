@@ -0,0 +1,82 @@
+package net.javasauce.ss.tasks.git;
+
+import net.javasauce.ss.util.task.TaskInput;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.transport.ReceiveCommand;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * Fast-forwards many branches to their tags in a single atomic ref transaction.
+ * <p>
+ * Unlike {@link FastForwardTask}, this only moves refs, nothing is checked out.
+ * Fast-forwardness is verified against the commit graph before anything is updated.
+ */
+public class FastForwardBranchesTask extends AbstractGitTask {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FastForwardBranchesTask.class);
+
+    /**
+     * The tag to fast-forward each branch to, by branch name.
+     */
+    public final TaskInput<Map<String, String>> branchTags = input("branchTags");
+
+    private FastForwardBranchesTask(String name, Executor executor) {
+        super(name, executor);
+    }
+
+    public static FastForwardBranchesTask create(String name, Executor executor, Consumer<FastForwardBranchesTask> cons) {
+        var task = new FastForwardBranchesTask(name, executor);
+        cons.accept(task);
+        return task;
+    }
+
+    @Override
+    protected void execute() throws Throwable {
+        var repo = git.get().getRepository();
+        var currentBranch = repo.getBranch();
+
+        List<ReceiveCommand> commands = new ArrayList<>();
+        Map<String, String> checkedOut = new HashMap<>();
+        try (RevWalk walk = new RevWalk(repo)) {
+            for (var entry : branchTags.get().entrySet()) {
+                var branch = entry.getKey();
+                var tag = entry.getValue();
+                var tagRef = repo.exactRef(Constants.R_TAGS + tag);
+                if (tagRef == null) throw new RuntimeException("Tag " + tag + " does not exist.");
+                RevCommit target = walk.parseCommit(tagRef.getObjectId());
+
+                var local = repo.exactRef(Constants.R_HEADS + branch);
+                var current = local != null ? local : repo.exactRef(Constants.R_REMOTES + "origin/" + branch);
+                if (current != null) {
+                    RevCommit currentCommit = walk.parseCommit(current.getObjectId());
+                    if (currentCommit.equals(target) && local != null) continue;
+                    if (!walk.isMergedInto(currentCommit, target)) {
+                        throw new RuntimeException("Unable to fast forward branch " + branch + ", " + tag + " does not descend from " + current.getName());
+                    }
+                }
+
+                // Moving the checked out branch would leave the working tree stale, do that one the slow way.
+                if (branch.equals(currentBranch)) {
+                    checkedOut.put(branch, target.name());
+                    continue;
+                }
+                commands.add(new ReceiveCommand(local != null ? local.getObjectId() : ObjectId.zeroId(), target, Constants.R_HEADS + branch));
+            }
+        }
+
+        LOGGER.info("Fast-forwarding {} branches.", commands.size());
+        updateRefsAtomically(commands, "fast-forward");
+        checkedOut.forEach(this::fastForwardBranchToCommit);
+    }
+}
@@ -0,0 +1,45 @@
+package net.javasauce.ss.tasks.git;
+
+import net.javasauce.ss.util.task.TaskInput;
+import org.eclipse.jgit.lib.TextProgressMonitor;
+import org.eclipse.jgit.transport.RefSpec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * Force fetches the given ref specs from a remote.
+ * <p>
+ * The remote may be the name of a configured remote, a url, or a path to a git bundle.
+ */
+public class FetchTask extends AbstractGitTask {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FetchTask.class);
+
+    public final TaskInput<String> remote = input("remote", "origin");
+    public final TaskInput<List<String>> refSpecs = input("refSpecs");
+
+    private FetchTask(String name, Executor executor) {
+        super(name, executor);
+    }
+
+    public static FetchTask create(String name, Executor executor, Consumer<FetchTask> cons) {
+        var task = new FetchTask(name, executor);
+        cons.accept(task);
+        return task;
+    }
+
+    @Override
+    protected void execute() throws Throwable {
+        var refSpecs = this.refSpecs.get();
+        LOGGER.info("Fetching {} from {}", refSpecs, remote.get());
+        git.get().fetch()
+                .setRemote(remote.get())
+                .setRefSpecs(refSpecs.stream().map(e -> new RefSpec(e).setForceUpdate(true)).toList())
+                .setProgressMonitor(new TextProgressMonitor())
+                .call();
+    }
+}
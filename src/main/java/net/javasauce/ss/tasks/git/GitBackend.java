@@ -0,0 +1,34 @@
+package net.javasauce.ss.tasks.git;
+
+import org.eclipse.jgit.api.Git;
+
+import java.io.IOException;
+
+/**
+ * Performs the heavier git operations for an {@link AbstractGitTask}.
+ */
+public interface GitBackend {
+
+    /**
+     * Stage all changes in the working tree, including deletions.
+     */
+    void stageAll(Git git) throws IOException;
+
+    /**
+     * Commit the staged changes.
+     *
+     * @param message The commit message.
+     * @param amend   If the HEAD commit should be amended instead.
+     */
+    void commit(Git git, String message, boolean amend) throws IOException;
+
+    /**
+     * Force push all tags to origin.
+     */
+    void pushTags(Git git) throws IOException;
+
+    /**
+     * Push all branches to origin.
+     */
+    void pushBranches(Git git) throws IOException;
+}
@@ -0,0 +1,56 @@
+package net.javasauce.ss.tasks.git;
+
+import java.util.Locale;
+
+/**
+ * The {@link GitBackend} to use for each kind of operation.
+ */
+public record GitBackends(
+        GitBackend stage,
+        GitBackend commit,
+        GitBackend push
+) {
+
+    public static final GitBackends JGIT = new GitBackends(JGitBackend.INSTANCE, JGitBackend.INSTANCE, JGitBackend.INSTANCE);
+
+    /**
+     * Parse a backend selection.
+     * <p>
+     * Either a single backend name used for everything, or a comma separated list of
+     * {@code operation=backend} pairs, for example {@code stage=native,push=native}.
+     * Operations are {@code stage}, {@code commit} and {@code push}. Backends are
+     * {@code jgit} and {@code native}. Unspecified operations use {@code jgit}.
+     *
+     * @param spec The selection.
+     * @return The parsed backends.
+     */
+    public static GitBackends parse(String spec) {
+        if (!spec.contains("=")) {
+            var backend = parseBackend(spec);
+            return new GitBackends(backend, backend, backend);
+        }
+
+        var backends = JGIT;
+        for (String pair : spec.split(",")) {
+            var split = pair.split("=", 2);
+            if (split.length != 2) throw new IllegalArgumentException("Expected operation=backend, got: " + pair);
+
+            var backend = parseBackend(split[1]);
+            backends = switch (split[0].trim().toLowerCase(Locale.ROOT)) {
+                case "stage" -> new GitBackends(backend, backends.commit, backends.push);
+                case "commit" -> new GitBackends(backends.stage, backend, backends.push);
+                case "push" -> new GitBackends(backends.stage, backends.commit, backend);
+                default -> throw new IllegalArgumentException("Unknown git operation: " + split[0]);
+            };
+        }
+        return backends;
+    }
+
+    private static GitBackend parseBackend(String name) {
+        return switch (name.trim().toLowerCase(Locale.ROOT)) {
+            case "jgit" -> JGitBackend.INSTANCE;
+            case "native" -> NativeGitBackend.INSTANCE;
+            default -> throw new IllegalArgumentException("Unknown git backend: " + name);
+        };
+    }
+}
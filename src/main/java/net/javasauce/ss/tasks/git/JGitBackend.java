@@ -0,0 +1,103 @@
+package net.javasauce.ss.tasks.git;
+
+import net.covers1624.quack.collection.FastStream;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.TextProgressMonitor;
+import org.eclipse.jgit.transport.PushResult;
+import org.eclipse.jgit.transport.RemoteRefUpdate;
+
+import java.io.IOException;
+
+/**
+ * A {@link GitBackend} implemented entirely with JGit.
+ */
+public final class JGitBackend implements GitBackend {
+
+    public static final JGitBackend INSTANCE = new JGitBackend();
+
+    private JGitBackend() {
+    }
+
+    @Override
+    public void stageAll(Git git) throws IOException {
+        try {
+            git.add()
+                    .addFilepattern(".")
+                    .call();
+            git.add()
+                    .addFilepattern(".")
+                    .setUpdate(true)
+                    .call();
+        } catch (GitAPIException ex) {
+            throw new IOException("Failed to stage changes.", ex);
+        }
+    }
+
+    @Override
+    public void commit(Git git, String message, boolean amend) throws IOException {
+        try {
+            var commit = git.commit()
+                    .setMessage(message);
+            if (amend) {
+                commit.setAmend(true);
+            } else {
+                commit.setAuthor("SnowShovel", "snowshovel@javasauce.net")
+                        .setCommitter("SnowShovel", "snowshovel@javasauce.net")
+                        .setAllowEmpty(true);
+            }
+            commit.call();
+        } catch (GitAPIException ex) {
+            throw new IOException("Failed to commit changes.", ex);
+        }
+    }
+
+    @Override
+    public void pushTags(Git git) throws IOException {
+        try {
+            var results = git.push()
+                    .setRemote("origin")
+                    .setForce(true)
+                    .setPushTags()
+                    .setProgressMonitor(new TextProgressMonitor())
+                    .call();
+            validatePush(results);
+        } catch (GitAPIException ex) {
+            throw new IOException("Failed to push tags.", ex);
+        }
+    }
+
+    @Override
+    public void pushBranches(Git git) throws IOException {
+        try {
+            var results = git.push()
+                    .setRemote("origin")
+                    .setPushAll()
+                    .setProgressMonitor(new TextProgressMonitor())
+                    .call();
+            validatePush(results);
+        } catch (GitAPIException ex) {
+            throw new IOException("Failed to push branches.", ex);
+        }
+    }
+
+    private static void validatePush(Iterable<PushResult> results) {
+        var errors = FastStream.of(results)
+                .flatMap(PushResult::getRemoteUpdates)
+                .filter(e -> e.getStatus() != RemoteRefUpdate.Status.OK && e.getStatus() != RemoteRefUpdate.Status.UP_TO_DATE)
+                .map(e -> new RuntimeException(
+                        "Failed to push %s to %s failed: %s %s".formatted(
+                                e.getSrcRef(),
+                                e.getRemoteName(),
+                                e.getStatus(),
+                                e.getMessage()))
+                )
+                .toList();
+        if (!errors.isEmpty()) {
+            throw FastStream.of(errors).fold(new RuntimeException("Failed to push."), (a, b) -> {
+                a.addSuppressed(b);
+                return a;
+            });
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package net.javasauce.ss.tasks.git;
+
+import org.eclipse.jgit.lib.ConfigConstants;
+import org.eclipse.jgit.lib.TextProgressMonitor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * Repacks the repository, writing reachability bitmaps and a commit-graph file.
+ * <p>
+ * Commit-graph reads are enabled in the repository config, so subsequent {@code RevWalk}s,
+ * such as parent lookups and fast-forward checks, load commits from the graph instead of
+ * parsing objects, and push negotiation can use the bitmaps.
+ */
+public class MaintenanceTask extends AbstractGitTask {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MaintenanceTask.class);
+
+    private MaintenanceTask(String name, Executor executor) {
+        super(name, executor);
+    }
+
+    public static MaintenanceTask create(String name, Executor executor, Consumer<MaintenanceTask> cons) {
+        var task = new MaintenanceTask(name, executor);
+        cons.accept(task);
+        return task;
+    }
+
+    @Override
+    protected void execute() throws Throwable {
+        var git = this.git.get();
+        var config = git.getRepository().getConfig();
+        config.setBoolean(ConfigConstants.CONFIG_CORE_SECTION, null, "commitGraph", true);
+        config.setBoolean(ConfigConstants.CONFIG_GC_SECTION, null, "writeCommitGraph", true);
+        config.setBoolean(ConfigConstants.CONFIG_PACK_SECTION, null, "buildBitmaps", true);
+        config.save();
+
+        LOGGER.info("Repacking repository with bitmaps and commit-graph.");
+        var stats = git.gc()
+                .setProgressMonitor(new TextProgressMonitor())
+                .call();
+        LOGGER.info("Repository maintenance finished: {}", stats);
+    }
+}
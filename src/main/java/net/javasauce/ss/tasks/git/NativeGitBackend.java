@@ -0,0 +1,82 @@
+package net.javasauce.ss.tasks.git;
+
+import net.javasauce.ss.util.ProcessUtils;
+import org.eclipse.jgit.api.Git;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link GitBackend} which runs the native {@code git} executable.
+ * <p>
+ * The repository, working tree and object store are passed to git explicitly,
+ * so this also works for pooled worktrees. Pushes authenticate with the same
+ * {@code GIT_USER} and {@code GIT_PASS} environment variables as JGit.
+ */
+public final class NativeGitBackend implements GitBackend {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(NativeGitBackend.class);
+
+    public static final NativeGitBackend INSTANCE = new NativeGitBackend("git");
+
+    // Feeds git the credentials from our environment, like JGit's CredentialsProvider.
+    private static final String CREDENTIAL_HELPER = "credential.helper=!f() { echo \"username=$GIT_USER\"; echo \"password=$GIT_PASS\"; }; f";
+
+    private final String executable;
+
+    public NativeGitBackend(String executable) {
+        this.executable = executable;
+    }
+
+    @Override
+    public void stageAll(Git git) throws IOException {
+        run(git, "add", "-A");
+    }
+
+    @Override
+    public void commit(Git git, String message, boolean amend) throws IOException {
+        // JGit commits regardless of changes, also when amending.
+        List<String> args = new ArrayList<>(List.of("commit", "--quiet", "--allow-empty", "-m", message));
+        if (amend) {
+            args.add("--amend");
+        }
+        run(git, args);
+    }
+
+    @Override
+    public void pushTags(Git git) throws IOException {
+        run(git, "-c", "credential.helper=", "-c", CREDENTIAL_HELPER, "push", "--porcelain", "--force", "--tags", "origin");
+    }
+
+    @Override
+    public void pushBranches(Git git) throws IOException {
+        run(git, "-c", "credential.helper=", "-c", CREDENTIAL_HELPER, "push", "--porcelain", "--all", "origin");
+    }
+
+    private void run(Git git, String... args) throws IOException {
+        run(git, List.of(args));
+    }
+
+    private void run(Git git, List<String> args) throws IOException {
+        var repo = git.getRepository();
+        Map<String, String> env = new HashMap<>();
+        env.put("GIT_DIR", repo.getDirectory().getAbsolutePath());
+        env.put("GIT_WORK_TREE", repo.getWorkTree().getAbsolutePath());
+        env.put("GIT_OBJECT_DIRECTORY", AbstractGitTask.getObjectsDirectory(repo).getAbsolutePath());
+        env.put("GIT_AUTHOR_NAME", "SnowShovel");
+        env.put("GIT_AUTHOR_EMAIL", "snowshovel@javasauce.net");
+        env.put("GIT_COMMITTER_NAME", "SnowShovel");
+        env.put("GIT_COMMITTER_EMAIL", "snowshovel@javasauce.net");
+        env.put("GIT_TERMINAL_PROMPT", "0");
+
+        var result = ProcessUtils.runProcess(executable, args, repo.getWorkTree().toPath(), env, LOGGER::info);
+        if (result.exitCode() != 0) {
+            throw new IOException("git " + args.getFirst() + " exited with code " + result.exitCode());
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package net.javasauce.ss.tasks.git;
+
+import net.javasauce.ss.util.task.TaskInput;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.internal.storage.file.FileRepository;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.transport.RefSpec;
+import org.eclipse.jgit.transport.URIish;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * Prepares a separate checkout of our repository, for use by another
+ * SnowShovel process on the same machine.
+ * <p>
+ * The checkout borrows objects from our repository via git alternates, so it costs
+ * almost nothing to create. Its origin is our repository, any tags it pushes land
+ * directly in ours.
+ */
+public class PrepareWorktreeTask extends AbstractGitTask {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PrepareWorktreeTask.class);
+
+    public final TaskInput<Path> worktreeDir = input("worktreeDir");
+
+    private PrepareWorktreeTask(String name, Executor executor) {
+        super(name, executor);
+    }
+
+    public static PrepareWorktreeTask create(String name, Executor executor, Consumer<PrepareWorktreeTask> cons) {
+        var task = new PrepareWorktreeTask(name, executor);
+        cons.accept(task);
+        return task;
+    }
+
+    @Override
+    protected void execute() throws Throwable {
+        var repo = git.get().getRepository();
+        var worktreeDir = this.worktreeDir.get();
+
+        if (Files.notExists(worktreeDir.resolve(".git"))) {
+            LOGGER.info("Creating worktree {}", worktreeDir);
+            Git.init().setDirectory(worktreeDir.toFile()).call().close();
+            Files.writeString(
+                    worktreeDir.resolve(".git/objects/info/alternates"),
+                    ((FileRepository) repo).getObjectsDirectory().getAbsolutePath() + "\n"
+            );
+        }
+
+        // Re-open, so the alternates are picked up.
+        try (Git worktree = Git.open(worktreeDir.toFile())) {
+            worktree.remoteSetUrl()
+                    .setRemoteName("origin")
+                    .setRemoteUri(new URIish(repo.getWorkTree().toURI().toURL()))
+                    .call();
+
+            // Our local branches may be ahead of our remote tracking branches, fetch ours over the top.
+            // All objects already exist via the alternates, so nothing is transferred.
+            fetch(worktree, "refs/remotes/origin/*:refs/remotes/origin/*");
+            fetch(worktree, "refs/heads/*:refs/remotes/origin/*");
+            // Tags are pushed back to us wholesale, don't leave any stale tags from previous runs around.
+            var tags = worktree.tagList().call().stream().map(Ref::getName).toArray(String[]::new);
+            if (tags.length != 0) {
+                worktree.tagDelete().setTags(tags).call();
+            }
+            fetch(worktree, "refs/tags/*:refs/tags/*");
+        }
+    }
+
+    private static void fetch(Git git, String refSpec) throws GitAPIException {
+        git.fetch()
+                .setRemote("origin")
+                .setRefSpecs(List.of(new RefSpec(refSpec).setForceUpdate(true)))
+                .call();
+    }
+}
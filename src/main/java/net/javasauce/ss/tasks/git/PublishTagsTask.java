@@ -0,0 +1,56 @@
+package net.javasauce.ss.tasks.git;
+
+import net.javasauce.ss.util.task.TaskInput;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.transport.ReceiveCommand;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * Copies tags from a pooled worktree into our repository.
+ * <p>
+ * The worktree shares our object store, so only the refs need copying.
+ */
+public class PublishTagsTask extends AbstractGitTask {
+
+    public final TaskInput<Git> worktree = input("worktree");
+    public final TaskInput<List<String>> tags = input("tags");
+
+    private PublishTagsTask(String name, Executor executor) {
+        super(name, executor);
+    }
+
+    public static PublishTagsTask create(String name, Executor executor, Consumer<PublishTagsTask> cons) {
+        var task = new PublishTagsTask(name, executor);
+        cons.accept(task);
+        return task;
+    }
+
+    @Override
+    protected void execute() throws Throwable {
+        var source = worktree.get().getRepository();
+        var repo = git.get().getRepository();
+
+        List<ReceiveCommand> commands = new ArrayList<>();
+        for (String tag : tags.get()) {
+            var name = Constants.R_TAGS + tag;
+            var sourceRef = source.exactRef(name);
+            if (sourceRef == null) throw new RuntimeException("Tag " + tag + " does not exist in worktree.");
+
+            var existing = repo.exactRef(name);
+            if (existing != null && existing.getObjectId().equals(sourceRef.getObjectId())) continue;
+
+            commands.add(new ReceiveCommand(
+                    existing != null ? existing.getObjectId() : ObjectId.zeroId(),
+                    sourceRef.getObjectId(),
+                    name
+            ));
+        }
+        updateRefsAtomically(commands, "publish tags");
+    }
+}
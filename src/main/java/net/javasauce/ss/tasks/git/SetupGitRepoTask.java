@@ -6,6 +6,8 @@ import net.javasauce.ss.util.task.TaskInput;
 import net.javasauce.ss.util.task.TaskOutput;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.internal.storage.file.FileRepository;
+import org.eclipse.jgit.lib.ConfigConstants;
 import org.eclipse.jgit.lib.TextProgressMonitor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -26,6 +28,14 @@ public class SetupGitRepoTask extends Task {
     public final TaskInput<Path> repoDir = input("repoDir");
     public final TaskInput<String> repoUrl = input("repoUrl");
     public final TaskInput<Boolean> clearClone = input("clearClone", false);
+    /**
+     * The backends git tasks operating on this repository should use.
+     */
+    public final TaskInput<GitBackends> backends = input("backends", GitBackends.JGIT);
+    /**
+     * If the repository should use reftable ref storage, converting it if required.
+     */
+    public final TaskInput<Boolean> reftable = input("reftable", false);
 
     public final TaskOutput<Git> output = computedOutput("output");
 
@@ -60,9 +70,27 @@ public class SetupGitRepoTask extends Task {
                         .setProgressMonitor(new TextProgressMonitor())
                         .call();
             }
+            if (reftable.get()) {
+                git = convertToReftable(git);
+            }
             output.set(git);
         } catch (GitAPIException | IOException ex) {
             throw new RuntimeException("Failed to init git repo.", ex);
         }
     }
+
+    private static Git convertToReftable(Git git) throws IOException {
+        var repo = git.getRepository();
+        var storage = repo.getConfig().getString(ConfigConstants.CONFIG_EXTENSIONS_SECTION, null, ConfigConstants.CONFIG_KEY_REF_STORAGE);
+        if (ConfigConstants.CONFIG_REF_STORAGE_REFTABLE.equals(storage)) return git;
+        if (!(repo instanceof FileRepository fileRepo)) throw new IOException("Unable to convert " + repo + " to reftable.");
+
+        LOGGER.info("Converting {} to reftable ref storage.", repo.getDirectory());
+        fileRepo.convertRefStorage(ConfigConstants.CONFIG_REF_STORAGE_REFTABLE, true, false);
+
+        // Re-open so nothing holds on to the old ref database.
+        var dir = repo.getDirectory();
+        git.close();
+        return Git.open(dir);
+    }
 }
@@ -0,0 +1,59 @@
+package net.javasauce.ss.tasks.git;
+
+import net.javasauce.ss.util.task.TaskInput;
+import net.javasauce.ss.util.task.TaskOutput;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.internal.storage.file.FileRepository;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * Opens, creating if required, an additional working tree for our repository.
+ * <p>
+ * The working tree has its own HEAD, index and refs, but reads and writes objects
+ * directly in our object store. Anything committed in it only needs its refs copied
+ * back to our repository, see {@link PublishTagsTask}.
+ * <p>
+ * The object store is only shared whilst opened through this task, the working tree is
+ * not usable as a standalone repository.
+ */
+public class SetupPooledWorktreeTask extends AbstractGitTask {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SetupPooledWorktreeTask.class);
+
+    public final TaskInput<Path> worktreeDir = input("worktreeDir");
+
+    public final TaskOutput<Git> output = computedOutput("output");
+
+    private SetupPooledWorktreeTask(String name, Executor executor) {
+        super(name, executor);
+    }
+
+    public static SetupPooledWorktreeTask create(String name, Executor executor, Consumer<SetupPooledWorktreeTask> cons) {
+        var task = new SetupPooledWorktreeTask(name, executor);
+        cons.accept(task);
+        return task;
+    }
+
+    @Override
+    protected void execute() throws Throwable {
+        var worktreeDir = this.worktreeDir.get();
+        var gitDir = worktreeDir.resolve(".git");
+        var repo = new FileRepositoryBuilder()
+                .setGitDir(gitDir.toFile())
+                .setWorkTree(worktreeDir.toFile())
+                .setObjectDirectory(((FileRepository) git.get().getRepository()).getObjectsDirectory())
+                .build();
+        if (Files.notExists(gitDir)) {
+            LOGGER.info("Creating pooled worktree {}", worktreeDir);
+            repo.create();
+        }
+        output.set(Git.wrap(repo));
+    }
+}
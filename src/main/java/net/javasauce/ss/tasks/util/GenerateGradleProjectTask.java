@@ -2,37 +2,113 @@ package net.javasauce.ss.tasks.util;
 
 import net.covers1624.jdkutils.JavaVersion;
 import net.covers1624.quack.io.IndentPrintWriter;
+import net.javasauce.ss.tasks.DecompileTask;
 import net.javasauce.ss.tasks.report.TestCaseDef;
+import net.javasauce.ss.util.FileUtils;
+import net.javasauce.ss.util.JarDiff;
 import net.javasauce.ss.util.LibraryDownload;
+import net.javasauce.ss.util.MemoizedSupplier;
 import net.javasauce.ss.util.ReportTableGenerator;
 import net.javasauce.ss.util.VersionManifest;
 import net.javasauce.ss.util.task.Task;
 import net.javasauce.ss.util.task.TaskInput;
 import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.Executor;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
+ * Generates the Gradle project files for a decompiled version.
+ * <p>
+ * Files are only written if their content changed, and the task is cached
+ * against the generated content and the files on disk.
+ * <p>
  * Created by covers1624 on 6/29/25.
  */
 public class GenerateGradleProjectTask extends Task {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(GenerateGradleProjectTask.class);
+
+    private static final String SETTINGS_GRADLE = """
+            pluginManagement {
+                repositories {
+                    mavenLocal()
+                    gradlePluginPortal()
+                }
+            }
+            
+            plugins {
+                id 'org.gradle.toolchains.foojay-resolver-convention' version '0.8.0'
+            }
+            
+            rootProject.name = 'Minecraft Client'
+            """;
+
+    private static final String GIT_IGNORE = """
+            # exclude all
+            /*
+            
+            # Include Important Folders
+            !src/
+            
+            # Gradle stuff
+            !gradle/
+            !gradlew
+            !gradlew.bat
+            !build.gradle
+            !settings.gradle
+            
+            # Include git important files
+            !.gitignore
+            
+            # Other files.
+            !README.md
+            !decompile_report.txt
+            """;
+
+    private static final String README_HEADER = """
+            # Shoveled
+            Output of SnowShovel
+            """;
+
     public final TaskInput<Path> projectDir = input("projectDir");
     public final TaskInput<Path> gradleWrapperDist = input("gradleWrapperDist");
     public final TaskInput<JavaVersion> javaVersion = input("javaVersion");
     public final TaskInput<List<LibraryDownload>> libraries = input("libraries");
     public final TaskInput<VersionManifest> mcManifest = input("mcManifest");
     public final TaskInput<String> gitRepoUrl = input("gitRepoUrl");
+    public final TaskInput<Optional<TestCaseDef>> testStats = optionalInput("testStats");
+    /**
+     * If the test stats should be read from the existing project, instead of {@link #testStats}.
+     * Used when only re-generating the project of an already decompiled version.
+     */
+    public final TaskInput<Boolean> reuseTestStats = input("reuseTestStats", false);
+    public final TaskInput<Optional<JarDiff.Stats>> classChanges = optionalInput("classChanges");
+
+    private final Supplier<Map<String, String>> files = new MemoizedSupplier<>(this::generateFiles);
 
     private GenerateGradleProjectTask(String name, Executor executor) {
         super(name, executor);
 
+        withCaching(projectDir, "_gradle", cache -> {
+            files.get().forEach((path, content) -> {
+                cache.add(path);
+                cache.add(content);
+                cache.add(projectDir.get().resolve(path));
+            });
+        });
+
         var zipTask = UnzipTask.create(name + "_unzipGradleDist", executor, task -> {
             task.zip.set(gradleWrapperDist);
             task.output.deriveFrom(projectDir, e -> e);
@@ -51,19 +127,32 @@ public class GenerateGradleProjectTask extends Task {
     protected void execute() throws Throwable {
         var projectDir = this.projectDir.get();
 
-        Files.writeString(projectDir.resolve("build.gradle"), buildGradleScript(javaVersion.get(), libraries.get()));
-        Files.writeString(projectDir.resolve("settings.gradle"), buildSettingsScript());
-        Files.writeString(projectDir.resolve(".gitignore"), buildGitIgnore());
-
-        TestCaseDef testStats = null;
-        var testStatsFile = projectDir.resolve("src/main/resources/test_stats.json");
-        if (Files.exists(testStatsFile)) {
-            testStats = TestCaseDef.loadTestStats(testStatsFile);
+        int written = 0;
+        for (var entry : files.get().entrySet()) {
+            if (FileUtils.writeIfChanged(projectDir.resolve(entry.getKey()), entry.getValue())) {
+                written++;
+            }
         }
-        Files.writeString(projectDir.resolve("README.md"), buildReadme(mcManifest.get(), gitRepoUrl.get(), testStats));
+        LOGGER.info("Generated project files, {} changed.", written);
+    }
+
+    private Map<String, String> generateFiles() {
+        Map<String, String> files = new LinkedHashMap<>();
+        files.put("build.gradle", buildGradleScript(javaVersion.get(), libraries.get()));
+        files.put("settings.gradle", SETTINGS_GRADLE);
+        files.put(".gitignore", GIT_IGNORE);
+        files.put("README.md", buildReadme(mcManifest.get(), gitRepoUrl.get(), getTestStats(), classChanges.get().orElse(null)));
+        return files;
+    }
+
+    private @Nullable TestCaseDef getTestStats() {
+        if (!reuseTestStats.get()) return testStats.get().orElse(null);
+
+        var existing = projectDir.get().resolve(DecompileTask.TEST_STATS);
+        return Files.exists(existing) ? TestCaseDef.loadTestStats(existing) : null;
     }
 
-    private String buildGradleScript(JavaVersion javaVersion, List<LibraryDownload> libraries) {
+    private static String buildGradleScript(JavaVersion javaVersion, List<LibraryDownload> libraries) {
         var sw = new StringWriter();
         try (IndentPrintWriter pw = new IndentPrintWriter(new PrintWriter(sw, true))) {
             pw.println("plugins {");
@@ -106,57 +195,16 @@ public class GenerateGradleProjectTask extends Task {
         return sw.toString();
     }
 
-    private String buildSettingsScript() {
-        return """
-                pluginManagement {
-                    repositories {
-                        mavenLocal()
-                        gradlePluginPortal()
-                    }
-                }
-                
-                plugins {
-                    id 'org.gradle.toolchains.foojay-resolver-convention' version '0.8.0'
-                }
-                
-                rootProject.name = 'Minecraft Client'
-                """;
-    }
-
-    private String buildGitIgnore() {
-        return """
-                # exclude all
-                /*
-                
-                # Include Important Folders
-                !src/
-                
-                # Gradle stuff
-                !gradle/
-                !gradlew
-                !gradlew.bat
-                !build.gradle
-                !settings.gradle
-                
-                # Include git important files
-                !.gitignore
-                
-                # Other files.
-                !README.md
-                !decompile_report.txt
-                """;
-    }
-
-    private String buildReadme(VersionManifest mcManifest, String gitRepoUrl, @Nullable TestCaseDef testStats) {
-        var readme = """
-                # Shoveled
-                Output of SnowShovel
-                """;
+    private static String buildReadme(VersionManifest mcManifest, String gitRepoUrl, @Nullable TestCaseDef testStats, @Nullable JarDiff.Stats classChanges) {
+        var readme = README_HEADER;
         if (testStats != null) {
             readme += new ReportTableGenerator()
                     .addRow(mcManifest.id(), testStats, gitRepoUrl, mcManifest.computeBranchName())
                     .build();
         }
+        if (classChanges != null) {
+            readme += "\nMojang replaced the client jar for this version, " + classChanges + " classes.\n";
+        }
         return readme;
     }
 }
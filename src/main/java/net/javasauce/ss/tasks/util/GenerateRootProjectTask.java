@@ -1,12 +1,12 @@
 package net.javasauce.ss.tasks.util;
 
 import net.javasauce.ss.util.CommittedTestCasePair;
+import net.javasauce.ss.util.FileUtils;
 import net.javasauce.ss.util.ProcessableVersionSet;
 import net.javasauce.ss.util.ReportTableGenerator;
 import net.javasauce.ss.util.task.Task;
 import net.javasauce.ss.util.task.TaskInput;
 
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Map;
 import java.util.concurrent.Executor;
@@ -37,8 +37,8 @@ public class GenerateRootProjectTask extends Task {
     protected void execute() throws Throwable {
         var projectDir = this.projectDir.get();
 
-        Files.writeString(projectDir.resolve(".gitignore"), buildGitIgnore());
-        Files.writeString(projectDir.resolve("README.md"), buildReadme());
+        FileUtils.writeIfChanged(projectDir.resolve(".gitignore"), buildGitIgnore());
+        FileUtils.writeIfChanged(projectDir.resolve("README.md"), buildReadme());
     }
 
     private String buildGitIgnore() {
@@ -5,6 +5,8 @@ import net.javasauce.ss.util.JdkProvider;
 import net.javasauce.ss.util.task.Task;
 import net.javasauce.ss.util.task.TaskInput;
 import net.javasauce.ss.util.task.TaskOutput;
+import net.javasauce.ss.util.task.TaskRegistry;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -32,7 +34,12 @@ public class SetupJdkTask extends Task {
     public static SetupJdkTask create(String name, Executor executor, JdkProvider provider, Consumer<SetupJdkTask> cons) {
         SetupJdkTask task = new SetupJdkTask(name, executor, provider);
         cons.accept(task);
-        return task;
+        return TaskRegistry.intern(task);
+    }
+
+    @Override
+    protected @Nullable Object getIdentity() {
+        return identityOf(provider, javaVersion);
     }
 
     @Override
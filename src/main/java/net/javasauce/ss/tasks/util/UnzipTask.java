@@ -1,46 +1,128 @@
 package net.javasauce.ss.tasks.util;
 
-import net.covers1624.quack.io.IOUtils;
 import net.javasauce.ss.util.task.Task;
 import net.javasauce.ss.util.task.TaskInput;
 import net.javasauce.ss.util.task.TaskOutput;
+import net.javasauce.ss.util.task.TaskRegistry;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
+import java.util.zip.CRC32;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
+import java.util.zip.ZipFile;
 
 /**
+ * Extracts a zip file into a directory.
+ * <p>
+ * Entries are extracted in parallel, any files which already exist on disk
+ * with the same size and CRC as the zip entry are left untouched.
+ * <p>
  * Created by covers1624 on 6/29/25.
  */
 public class UnzipTask extends Task {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(UnzipTask.class);
+
     public final TaskInput<Path> zip = input("zip");
     public final TaskOutput<Path> output = output("output");
 
     private UnzipTask(String name, Executor executor) {
         super(name, executor);
+
+        withCaching(output, "_unzip", cache -> {
+            cache.add(zip);
+            cache.add(output, Path::toString);
+            // Include every extracted file, so we re-run if any are deleted or modified.
+            for (String entry : listFileEntries(zip.get())) {
+                cache.add(output.get().resolve(entry));
+            }
+        });
+        withFileLock(output);
     }
 
     public static UnzipTask create(String name, Executor executor, Consumer<UnzipTask> cons) {
         var task = new UnzipTask(name, executor);
         cons.accept(task);
-        return task;
+        return TaskRegistry.intern(task);
+    }
+
+    @Override
+    protected @Nullable Object getIdentity() {
+        return identityOf(zip, output);
     }
 
     @Override
     protected void execute() throws Throwable {
         var output = this.output.get();
-        try (ZipInputStream zin = new ZipInputStream(Files.newInputStream(zip.get()))) {
-            ZipEntry entry;
-            while ((entry = zin.getNextEntry()) != null) {
-                if (entry.isDirectory()) continue;
+        AtomicInteger skipped = new AtomicInteger();
+        try (ZipFile zipFile = new ZipFile(zip.get().toFile())) {
+            List<? extends ZipEntry> entries = zipFile.stream()
+                    .filter(e -> !e.isDirectory())
+                    .toList();
+            // Create directories up-front, so the parallel extraction doesn't race on them.
+            Set<Path> dirs = new HashSet<>();
+            for (ZipEntry entry : entries) {
+                Path dir = output.resolve(entry.getName()).getParent();
+                if (dirs.add(dir)) {
+                    Files.createDirectories(dir);
+                }
+            }
+
+            entries.parallelStream().forEach(entry -> {
+                try {
+                    Path file = output.resolve(entry.getName());
+                    if (isUpToDate(file, entry)) {
+                        skipped.incrementAndGet();
+                        return;
+                    }
+                    try (InputStream is = zipFile.getInputStream(entry)) {
+                        Files.copy(is, file, StandardCopyOption.REPLACE_EXISTING);
+                    }
+                } catch (IOException ex) {
+                    throw new UncheckedIOException("Failed to extract " + entry.getName(), ex);
+                }
+            });
+            LOGGER.info("Extracted {} files to {}, {} were already up-to-date.", entries.size() - skipped.get(), output, skipped.get());
+        }
+    }
+
+    private static List<String> listFileEntries(Path zip) {
+        try (ZipFile zipFile = new ZipFile(zip.toFile())) {
+            return zipFile.stream()
+                    .filter(e -> !e.isDirectory())
+                    .map(ZipEntry::getName)
+                    .toList();
+        } catch (IOException ex) {
+            throw new RuntimeException("Failed to read zip entries of " + zip, ex);
+        }
+    }
+
+    private static boolean isUpToDate(Path file, ZipEntry entry) throws IOException {
+        if (!Files.isRegularFile(file)) return false;
+        if (entry.getSize() == -1 || entry.getCrc() == -1) return false;
+        if (Files.size(file) != entry.getSize()) return false;
 
-                Files.copy(zin, IOUtils.makeParents(output.resolve(entry.getName())), StandardCopyOption.REPLACE_EXISTING);
+        CRC32 crc = new CRC32();
+        try (InputStream is = Files.newInputStream(file)) {
+            byte[] buf = new byte[8192];
+            int len;
+            while ((len = is.read(buf)) != -1) {
+                crc.update(buf, 0, len);
             }
         }
+        return crc.getValue() == entry.getCrc();
     }
 }
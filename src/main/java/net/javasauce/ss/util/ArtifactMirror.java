@@ -0,0 +1,85 @@
+package net.javasauce.ss.util;
+
+import net.covers1624.quack.io.IOUtils;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.UUID;
+
+/**
+ * A local directory mirroring remote artifacts, by url.
+ * <p>
+ * Each url maps to {@code <host>/<path>} within the mirror, urls with a query string
+ * have a hash of it appended, so API requests mirror as well as plain files. The
+ * layout is stable, a mirror populated on one machine can be copied to another.
+ */
+public final class ArtifactMirror {
+
+    private final Path dir;
+
+    public ArtifactMirror(Path dir) {
+        this.dir = dir;
+    }
+
+    /**
+     * Get the file the given url is mirrored at.
+     *
+     * @param url The url.
+     * @return The file, which may not exist.
+     */
+    public Path pathFor(String url) {
+        var uri = URI.create(url).normalize();
+        if (uri.getHost() == null) throw new IllegalArgumentException("Url has no host: " + url);
+
+        var path = uri.getPath() != null ? uri.getPath() : "";
+        if (path.isEmpty() || path.endsWith("/")) {
+            path += "index";
+        }
+        if (uri.getRawQuery() != null) {
+            var digest = Hashing.digest(Hashing.SHA1);
+            Hashing.addUTFBytes(digest, uri.getRawQuery());
+            path += "@" + Hashing.toString(digest);
+        }
+        var host = uri.getPort() != -1 ? uri.getHost() + "_" + uri.getPort() : uri.getHost();
+        var file = dir.resolve(host).resolve(path.replaceFirst("^/+", "")).normalize();
+        if (!file.startsWith(dir)) throw new IllegalArgumentException("Url escapes the mirror: " + url);
+        return file;
+    }
+
+    /**
+     * Store the given response body as the mirrored copy of the given url, replacing any existing copy.
+     *
+     * @param url  The url.
+     * @param body The response body.
+     * @return The mirrored file.
+     */
+    public Path store(String url, InputStream body) throws IOException {
+        var file = pathFor(url);
+        // The mirror may be shared with other processes, never expose a partial file.
+        var tempFile = IOUtils.makeParents(file).resolveSibling(file.getFileName() + "." + UUID.randomUUID() + ".part");
+        try {
+            Files.copy(body, tempFile);
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+        return file;
+    }
+
+    /**
+     * Thrown when an artifact is requested whilst offline, which is not in the mirror.
+     * <p>
+     * Retrying will never succeed.
+     */
+    public static final class NotMirroredException extends FileNotFoundException {
+
+        public NotMirroredException(String url) {
+            super("Url " + url + " is not available in the offline mirror.");
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package net.javasauce.ss.util;
+
+/**
+ * How much work a change to a version requires, cheapest first.
+ */
+public enum ChangeImpact {
+    /**
+     * Only the generated project files may differ, the existing decompiled
+     * sources and test results on the version's branch are still valid.
+     */
+    REGENERATE,
+    /**
+     * The decompiler classpath or test JDK changed, the jar did not. The existing decompiled
+     * sources on the version's branch are kept, their compile tests run again against the
+     * new classpath and JDK.
+     */
+    RETEST,
+    /**
+     * The jar itself changed, or the version needs a new branch.
+     */
+    DECOMPILE;
+
+    public ChangeImpact max(ChangeImpact other) {
+        return other.ordinal() > ordinal() ? other : this;
+    }
+}
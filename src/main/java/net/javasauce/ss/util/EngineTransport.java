@@ -0,0 +1,58 @@
+package net.javasauce.ss.util;
+
+import net.covers1624.quack.net.DownloadAction;
+import net.covers1624.quack.net.HttpEngineDownloadAction;
+import net.covers1624.quack.net.httpapi.HttpEngine;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * A {@link HttpTransport} making requests with a Quack {@link HttpEngine}, through a {@link HttpEngineDownloadAction}.
+ * <p>
+ * The download action doesn't expose the status code of a failed request, so these are never
+ * reported as a {@link HttpStatusException}.
+ */
+public final class EngineTransport implements HttpTransport {
+
+    private final HttpEngine http;
+
+    public EngineTransport(HttpEngine http) {
+        this.http = http;
+    }
+
+    @Override
+    public boolean get(String url, Dest dest, boolean conditional) throws IOException {
+        var action = new HttpEngineDownloadAction(http)
+                .setUrl(url)
+                .setDest(new DownloadAction.Dest() {
+                    @Override
+                    public OutputStream getOutputStream() {
+                        try {
+                            return dest.getOutputStream();
+                        } catch (IOException ex) {
+                            throw new UncheckedIOException(ex);
+                        }
+                    }
+
+                    // @formatter:off
+                    @Override public @Nullable String getEtag() { return dest.getEtag(); }
+                    @Override public void setEtag(String etag) { dest.setEtag(etag); }
+                    @Override public long getLastModified() { return dest.getLastModified(); }
+                    @Override public void setLastModified(long time) { dest.setLastModified(time); }
+                    @Override public void onFinished(boolean success) { }
+                    // @formatter:on
+                })
+                .setQuiet(false)
+                .setUseETag(conditional)
+                .setOnlyIfModified(conditional);
+        try {
+            action.execute();
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+        return action.isUpToDate();
+    }
+}
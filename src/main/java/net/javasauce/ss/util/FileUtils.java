@@ -0,0 +1,32 @@
+package net.javasauce.ss.util;
+
+import net.covers1624.quack.io.IOUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+public class FileUtils {
+
+    /**
+     * Write the given string to a file, only if the file does not already
+     * contain the exact same content.
+     * <p>
+     * Skipping the write preserves the files modification time, which lets
+     * git skip re-hashing the file when staging.
+     *
+     * @param file    The file to write.
+     * @param content The content to write.
+     * @return If the file was written.
+     */
+    public static boolean writeIfChanged(Path file, String content) throws IOException {
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        if (Files.isRegularFile(file) && Files.size(file) == bytes.length && Arrays.equals(Files.readAllBytes(file), bytes)) {
+            return false;
+        }
+        Files.write(IOUtils.makeParents(file), bytes);
+        return true;
+    }
+}
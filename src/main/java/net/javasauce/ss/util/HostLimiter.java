@@ -0,0 +1,351 @@
+package net.javasauce.ss.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.net.http.HttpTimeoutException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Limits the number of concurrent requests made to each host, adapting the limit to what
+ * each host sustains.
+ * <p>
+ * Downloads may run on virtual threads, where nothing else bounds how many run at once.
+ * Each host starts at a small limit, which grows additively whilst requests succeed in a
+ * reasonable time, and shrinks multiplicatively when they fail or slow down. Latency is
+ * measured to the first byte of the response where possible, so large downloads don't
+ * look like a struggling host.
+ * <p>
+ * Only failures which say something about the host, see {@link #isHostFailure}, count against it.
+ * A host which fails {@link #TRIP_FAILURES} requests in a row has its circuit opened, requests
+ * fail fast with {@link HostUnavailableException} until a cooldown passes. A single request is then
+ * let through as a probe, closing the circuit if it succeeds, re-opening it for longer if not.
+ */
+public final class HostLimiter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HostLimiter.class);
+
+    private static final int INITIAL_LIMIT = 4;
+    // A request slower than this many times the host's baseline latency counts as the host slowing down.
+    private static final double LATENCY_TOLERANCE = 3;
+    private static final double ERROR_DECREASE = 0.5;
+    private static final double LATENCY_DECREASE = 0.8;
+
+    static final int TRIP_FAILURES = 5;
+    private static final long MIN_COOLDOWN = TimeUnit.SECONDS.toNanos(5);
+    private static final long MAX_COOLDOWN = TimeUnit.SECONDS.toNanos(120);
+
+    private static final long BASE_BACKOFF = TimeUnit.MILLISECONDS.toNanos(250);
+    private static final long MAX_BACKOFF = TimeUnit.SECONDS.toNanos(30);
+
+    private final int initialPerHost;
+    private final int maxPerHost;
+    private final LongSupplier clock;
+    private final Map<String, Host> hosts = new ConcurrentHashMap<>();
+
+    /**
+     * @param maxPerHost The maximum number of requests which may be made to a single host at once.
+     */
+    public HostLimiter(int maxPerHost) {
+        this(Math.min(INITIAL_LIMIT, maxPerHost), maxPerHost);
+    }
+
+    /**
+     * @param initialPerHost The number of requests which may be made to a host at once, before
+     *                       anything is known about it.
+     * @param maxPerHost     The maximum number of requests which may be made to a single host at once.
+     */
+    public HostLimiter(int initialPerHost, int maxPerHost) {
+        this(initialPerHost, maxPerHost, System::nanoTime);
+    }
+
+    // The clock is only swapped out by tests, to step through latencies and cooldowns.
+    HostLimiter(int initialPerHost, int maxPerHost, LongSupplier clock) {
+        if (initialPerHost < 1 || maxPerHost < initialPerHost) throw new IllegalArgumentException("Invalid limits, initial " + initialPerHost + " max " + maxPerHost);
+
+        this.initialPerHost = initialPerHost;
+        this.maxPerHost = maxPerHost;
+        this.clock = clock;
+    }
+
+    /**
+     * @return A limiter which never limits concurrency. Circuits are still broken for failing hosts.
+     */
+    public static HostLimiter unlimited() {
+        return new HostLimiter(Integer.MAX_VALUE, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Wait for a permit to make a request to the host of the given url.
+     *
+     * @param url The url being requested.
+     * @return The permit, close it once the request is finished.
+     * @throws HostUnavailableException If the host's circuit is open.
+     */
+    public Permit acquire(String url) throws IOException {
+        return hosts.computeIfAbsent(hostOf(url), Host::new).acquire();
+    }
+
+    /**
+     * The current concurrency limit for the given host.
+     *
+     * @param host The host.
+     * @return The limit.
+     */
+    public int limit(String host) {
+        var state = hosts.get(host);
+        return state != null ? state.effectiveLimit() : initialPerHost;
+    }
+
+    /**
+     * Sleep before retrying a failed request.
+     * <p>
+     * Uses exponential backoff with full jitter, so requests which failed together don't
+     * retry together. Requests rejected by an open circuit wait at least until it may close.
+     *
+     * @param attempt The number of attempts made so far, starting at 1.
+     * @param failure The failure of the last attempt.
+     */
+    public static void backoff(int attempt, IOException failure) throws InterruptedIOException {
+        long cap = Math.min(MAX_BACKOFF, BASE_BACKOFF << Math.min(attempt - 1, 16));
+        long delay = ThreadLocalRandom.current().nextLong(cap + 1);
+        if (failure instanceof HostUnavailableException ex) {
+            delay = Math.max(delay, ex.retryAfterNanos);
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(delay);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            var ioEx = new InterruptedIOException("Interrupted waiting to retry.");
+            ioEx.initCause(ex);
+            throw ioEx;
+        }
+    }
+
+    /**
+     * If the given failure may succeed when retried.
+     * <p>
+     * Server errors, timeouts, rate limiting and connection problems are retryable.
+     * Other client errors, and missing files, are not. Failures which can't be
+     * classified, such as those from the curl engine, are assumed retryable.
+     *
+     * @param failure The failure.
+     * @return If the request should be retried.
+     */
+    public static boolean isRetryable(IOException failure) {
+        if (failure instanceof HttpStatusException ex) {
+            int status = ex.statusCode();
+            return status >= 500 || status == 408 || status == 429;
+        }
+        if (failure instanceof FileNotFoundException) return false;
+        // Interrupted, not timed out.
+        if (failure instanceof InterruptedIOException && !(failure instanceof SocketTimeoutException)) return false;
+        return true;
+    }
+
+    /**
+     * If the given failure means the host is struggling, or unreachable.
+     * <p>
+     * Only these are counted by a {@link Permit}, shrinking the host's limit and eventually
+     * breaking its circuit. A missing file or a rejected request says nothing about the host.
+     *
+     * @param failure The failure.
+     * @return If the failure should count against the host.
+     */
+    public static boolean isHostFailure(IOException failure) {
+        if (failure instanceof HttpStatusException ex) {
+            int status = ex.statusCode();
+            return status >= 500 || status == 429;
+        }
+        return failure instanceof SocketException
+               || failure instanceof SocketTimeoutException
+               || failure instanceof UnknownHostException
+               || failure instanceof HttpTimeoutException;
+    }
+
+    static String hostOf(String url) {
+        var host = URI.create(url).getHost();
+        return host != null ? host : url;
+    }
+
+    /**
+     * A permit to make a request.
+     * <p>
+     * The request is assumed to have succeeded when closed, unless {@link #failed()} was called.
+     */
+    public interface Permit extends AutoCloseable {
+
+        /**
+         * Mark the response as having started, the time until this is used as the request's latency.
+         */
+        void responding();
+
+        /**
+         * Mark the request as failed, in a way which counts against the host.
+         *
+         * @see #isHostFailure
+         */
+        void failed();
+
+        @Override
+        void close();
+    }
+
+    /**
+     * Thrown when a request is rejected, as its host's circuit is open.
+     */
+    public static final class HostUnavailableException extends IOException {
+
+        private final long retryAfterNanos;
+
+        HostUnavailableException(String host, long retryAfterNanos) {
+            super("Host " + host + " is unavailable after repeated failures, retry in " + TimeUnit.NANOSECONDS.toMillis(retryAfterNanos) + "ms.");
+            this.retryAfterNanos = retryAfterNanos;
+        }
+    }
+
+    private final class Host {
+
+        private final String name;
+        // Not synchronized, so waiting virtual threads don't pin their carrier.
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition available = lock.newCondition();
+
+        private double limit = initialPerHost;
+        private int inFlight;
+        // Nanos. The baseline tracks the fastest responses, drifting up slowly so it can recover.
+        private double baselineLatency = -1;
+        private long lastDecrease;
+
+        private int consecutiveFailures;
+        private int trips;
+        // Nanos, 0 whilst the circuit is closed.
+        private long openUntil;
+
+        Host(String name) {
+            this.name = name;
+            lastDecrease = clock.getAsLong() - MAX_COOLDOWN;
+        }
+
+        Permit acquire() throws IOException {
+            lock.lock();
+            try {
+                while (true) {
+                    if (openUntil != 0) {
+                        long remaining = openUntil - clock.getAsLong();
+                        if (remaining > 0) throw new HostUnavailableException(name, remaining);
+                    }
+                    if (inFlight < effectiveLimit()) break;
+                    available.await();
+                }
+                inFlight++;
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                var ioEx = new InterruptedIOException("Interrupted waiting for a request permit for " + name);
+                ioEx.initCause(ex);
+                throw ioEx;
+            } finally {
+                lock.unlock();
+            }
+
+            long start = clock.getAsLong();
+            return new Permit() {
+                private long responded = -1;
+                private boolean failed;
+                private boolean closed;
+
+                // @formatter:off
+                @Override public void responding() { if (responded == -1) responded = clock.getAsLong(); }
+                @Override public void failed() { failed = true; }
+                // @formatter:on
+
+                @Override
+                public void close() {
+                    if (closed) return;
+                    closed = true;
+                    release(failed, (responded != -1 ? responded : clock.getAsLong()) - start);
+                }
+            };
+        }
+
+        int effectiveLimit() {
+            // Half open, only the probe may run.
+            if (openUntil != 0) return 1;
+            return (int) limit;
+        }
+
+        private void release(boolean failed, long latency) {
+            lock.lock();
+            try {
+                inFlight--;
+                if (failed) {
+                    onFailure();
+                } else {
+                    onSuccess(latency);
+                }
+                available.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void onSuccess(long latency) {
+            consecutiveFailures = 0;
+            if (openUntil != 0) {
+                LOGGER.info("Host {} recovered, closing circuit.", name);
+                openUntil = 0;
+                trips = 0;
+            }
+
+            if (baselineLatency < 0 || latency < baselineLatency) {
+                baselineLatency = latency;
+            } else {
+                baselineLatency += (latency - baselineLatency) * 0.002;
+            }
+
+            if (latency > baselineLatency * LATENCY_TOLERANCE) {
+                decrease(LATENCY_DECREASE);
+            } else {
+                // Roughly one extra request per limit's worth of successes.
+                limit = Math.min(maxPerHost, limit + 1 / limit);
+            }
+        }
+
+        private void onFailure() {
+            consecutiveFailures++;
+            decrease(ERROR_DECREASE);
+
+            // A failed probe re-opens immediately. Failures of requests which were in flight when it opened don't count.
+            boolean probe = openUntil != 0 && clock.getAsLong() >= openUntil;
+            if (probe || openUntil == 0 && consecutiveFailures >= TRIP_FAILURES) {
+                long cooldown = Math.min(MAX_COOLDOWN, MIN_COOLDOWN << Math.min(trips, 16));
+                trips++;
+                openUntil = clock.getAsLong() + cooldown;
+                LOGGER.warn("Host {} failed {} requests in a row, rejecting requests for {}ms.", name, consecutiveFailures, TimeUnit.NANOSECONDS.toMillis(cooldown));
+            }
+        }
+
+        private void decrease(double factor) {
+            long now = clock.getAsLong();
+            // Requests in flight when the host started struggling all report it, only react once per baseline latency.
+            if (now - lastDecrease < Math.max(baselineLatency, 0)) return;
+
+            lastDecrease = now;
+            limit = Math.max(1, limit * factor);
+            LOGGER.debug("Reduced concurrency limit for {} to {}.", name, (int) limit);
+        }
+    }
+}
@@ -0,0 +1,326 @@
+package net.javasauce.ss.util;
+
+import net.covers1624.quack.io.IOUtils;
+import net.covers1624.quack.net.httpapi.HttpEngine;
+import net.covers1624.quack.util.SneakyUtils;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The shared HTTP layer used for all GET requests made by SnowShovel.
+ * <p>
+ * Requests are made conditionally where possible, using the ETag or Last-Modified
+ * value of a previous response stored in an on-disk response store.
+ * <p>
+ * Concurrent identical requests are coalesced, only the first performs the
+ * transfer, others wait on and share its result.
+ * <p>
+ * Transfers are made with a {@link HttpTransport}, and limited per host by a {@link HostLimiter}.
+ */
+public final class HttpCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HttpCache.class);
+
+    private final HttpEngine http;
+    private final HttpTransport transport;
+    private final Path storeDir;
+    private final HostLimiter limiter;
+
+    private final Map<String, CompletableFuture<?>> inFlight = new ConcurrentHashMap<>();
+
+    public HttpCache(HttpEngine http, HttpTransport transport, Path storeDir) {
+        this(http, transport, storeDir, HostLimiter.unlimited());
+    }
+
+    public HttpCache(HttpEngine http, HttpTransport transport, Path storeDir, HostLimiter limiter) {
+        this.http = http;
+        this.transport = transport;
+        this.storeDir = storeDir;
+        this.limiter = limiter;
+    }
+
+    /**
+     * @return The underlying {@link HttpEngine}, for requests which can't be cached.
+     */
+    public HttpEngine engine() {
+        return http;
+    }
+
+    /**
+     * Get the given url into memory.
+     * <p>
+     * The response is revalidated against, and stored in, the on-disk response store.
+     *
+     * @param url The url.
+     * @return The download.
+     */
+    public InMemoryDownload get(String url) throws IOException {
+        return coalesce("get " + url, () -> {
+            Path storeFile = storeFile(url);
+            // The store may be shared with other processes.
+            try (var lock = ProcessLock.acquire(storeFile.resolveSibling(storeFile.getFileName() + ".lock"))) {
+                var existing = InMemoryDownload.readFrom(storeFile);
+                var download = fetch(url, existing);
+                if (!download.isUpToDate()) {
+                    download.writeTo(storeFile);
+                }
+                return download;
+            }
+        });
+    }
+
+    /**
+     * Get the given url into memory, revalidating against the provided previous response.
+     * <p>
+     * The on-disk response store is not used.
+     *
+     * @param url      The url.
+     * @param existing The previous response for this url, if available.
+     * @return The download. If {@link InMemoryDownload#isUpToDate()} is {@code true}, this will
+     * contain the body of the existing download.
+     */
+    public InMemoryDownload fetch(String url, @Nullable InMemoryDownload existing) throws IOException {
+        class DownloadDest implements HttpTransport.Dest {
+
+            private final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            private @Nullable String etag;
+            private long lastModified;
+            private HostLimiter.@Nullable Permit permit;
+
+            public void reset() {
+                bos.reset();
+                etag = existing != null ? existing.etag() : null;
+                lastModified = existing != null ? existing.lastModified() : -1;
+            }
+
+            @Override
+            public OutputStream getOutputStream() {
+                if (permit != null) permit.responding();
+                return bos;
+            }
+
+            // @formatter:off
+            @Override public @Nullable String getEtag() { return etag; }
+            @Override public void setEtag(String etag) { this.etag = etag; }
+            @Override public long getLastModified() { return lastModified; }
+            @Override public void setLastModified(long time) { lastModified = time; }
+            // @formatter:on
+        }
+        DownloadDest dest = new DownloadDest();
+        boolean isUpToDate = withRetry(10, () -> {
+            dest.reset();
+            boolean upToDate;
+            try (var permit = limiter.acquire(url)) {
+                dest.permit = permit;
+                upToDate = execute(url, dest, existing != null, permit);
+            }
+            if (upToDate && existing != null) {
+                dest.bos.writeBytes(existing.body());
+            }
+            return upToDate;
+        });
+        return new InMemoryDownload(isUpToDate, dest.bos.toByteArray(), dest.etag, dest.lastModified);
+    }
+
+    /**
+     * Download the given url to a file.
+     * <p>
+     * If the file exists and a previous response for the url is stored, the request is made
+     * conditionally, leaving the file untouched if the server reports it has not changed.
+     * <p>
+     * This does not retry on failure, callers are expected to validate the download and retry.
+     * Callers are also expected to hold a {@link ProcessLock} for the file, if it may be shared
+     * with other processes.
+     *
+     * @param url  The url.
+     * @param dest The file to download to.
+     * @return If the file was already up-to-date.
+     */
+    public boolean download(String url, Path dest) throws IOException {
+        return coalesce("download " + url + " -> " + dest, () -> {
+            Path metaFile = storeFile(url + " -> " + dest);
+            var meta = Files.exists(dest) ? InMemoryDownload.readFrom(metaFile) : null;
+            Path tempFile = dest.resolveSibling(dest.getFileName() + ".part");
+
+            class FileDest implements HttpTransport.Dest {
+
+                private @Nullable String etag = meta != null ? meta.etag() : null;
+                private long lastModified = meta != null ? meta.lastModified() : -1;
+                private HostLimiter.@Nullable Permit permit;
+
+                @Override
+                public OutputStream getOutputStream() throws IOException {
+                    if (permit != null) permit.responding();
+                    return Files.newOutputStream(IOUtils.makeParents(tempFile));
+                }
+
+                // @formatter:off
+                @Override public @Nullable String getEtag() { return etag; }
+                @Override public void setEtag(String etag) { this.etag = etag; }
+                @Override public long getLastModified() { return lastModified; }
+                @Override public void setLastModified(long time) { lastModified = time; }
+                // @formatter:on
+            }
+            FileDest fileDest = new FileDest();
+            try {
+                boolean upToDate;
+                try (var permit = limiter.acquire(url)) {
+                    fileDest.permit = permit;
+                    upToDate = execute(url, fileDest, meta != null, permit);
+                }
+                if (upToDate) {
+                    LOGGER.info("File {} is up-to-date with {}", dest, url);
+                    return true;
+                }
+                Files.move(tempFile, dest, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(tempFile);
+            }
+            // We only need the validators, not the body.
+            new InMemoryDownload(false, new byte[0], fileDest.etag, fileDest.lastModified).writeTo(metaFile);
+            return false;
+        });
+    }
+
+    /**
+     * Get a range of bytes of the given url into memory.
+     * <p>
+     * Nothing is stored, ranges are only ever read once.
+     *
+     * @param url    The url.
+     * @param offset The offset of the first byte.
+     * @param len    The number of bytes.
+     * @return The bytes, or {@code null} if the server doesn't support ranged requests.
+     */
+    public byte @Nullable [] getRange(String url, long offset, int len) throws IOException {
+        return withRetry(10, () -> {
+            try (var permit = limiter.acquire(url)) {
+                try {
+                    return transport.getRange(url, offset, len);
+                } catch (IOException ex) {
+                    if (HostLimiter.isHostFailure(ex)) {
+                        permit.failed();
+                    }
+                    throw ex;
+                }
+            }
+        });
+    }
+
+    /**
+     * Get the file responses for the given url are recorded to, if they are being recorded to a mirror.
+     *
+     * @param url The url.
+     * @return The file, which may not exist yet.
+     */
+    public Optional<Path> recordedFile(String url) {
+        return transport.recordedFile(url);
+    }
+
+    /**
+     * Record a local file known to be identical to the given url, if responses are being recorded
+     * to a mirror. Callers which skip a request, as their file is already valid, must call this
+     * so the mirror doesn't miss the url.
+     *
+     * @param url  The url.
+     * @param file The file.
+     */
+    public void recordLocal(String url, Path file) throws IOException {
+        transport.recordLocal(url, file);
+    }
+
+    /**
+     * Forget any stored response for the given file download, forcing the next
+     * {@link #download} to be unconditional.
+     *
+     * @param url  The url.
+     * @param dest The file.
+     */
+    public void forget(String url, Path dest) throws IOException {
+        Path metaFile = storeFile(url + " -> " + dest);
+        Files.deleteIfExists(metaFile);
+        Files.deleteIfExists(metaFile.resolveSibling(metaFile.getFileName() + ".etag"));
+        Files.deleteIfExists(metaFile.resolveSibling(metaFile.getFileName() + ".lastmod"));
+    }
+
+    private Path storeFile(String key) {
+        var digest = Hashing.digest(Hashing.SHA1);
+        digest.update(key.getBytes(StandardCharsets.UTF_8));
+        return storeDir.resolve(Hashing.toString(digest));
+    }
+
+    @SuppressWarnings ("unchecked")
+    private <T> T coalesce(String key, SneakyUtils.ThrowingSupplier<T, IOException> func) throws IOException {
+        CompletableFuture<T> ours = new CompletableFuture<>();
+        var existing = (CompletableFuture<T>) inFlight.putIfAbsent(key, ours);
+        if (existing != null) {
+            LOGGER.debug("Joining in-flight request {}", key);
+            try {
+                return existing.join();
+            } catch (CompletionException ex) {
+                if (ex.getCause() instanceof IOException io) throw io;
+                throw ex;
+            }
+        }
+        try {
+            T result = func.get();
+            ours.complete(result);
+            return result;
+        } catch (Throwable ex) {
+            ours.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            inFlight.remove(key, ours);
+        }
+    }
+
+    private boolean execute(String url, HttpTransport.Dest dest, boolean conditional, HostLimiter.Permit permit) throws IOException {
+        try {
+            return transport.get(url, dest, conditional);
+        } catch (IOException ex) {
+            if (HostLimiter.isHostFailure(ex)) {
+                permit.failed();
+            }
+            throw ex;
+        }
+    }
+
+    private static <T> T withRetry(int retries, SneakyUtils.ThrowingSupplier<T, IOException> r) throws IOException {
+        if (retries == 0) throw new IllegalArgumentException("Need more than 0 retries.");
+
+        IOException exception = null;
+        for (int i = 0; i < retries; i++) {
+            try {
+                return r.get();
+            } catch (IOException ex) {
+                if (!HostLimiter.isRetryable(ex)) {
+                    if (exception != null) ex.addSuppressed(exception);
+                    throw ex;
+                }
+                if (exception == null) {
+                    exception = ex;
+                } else {
+                    exception.addSuppressed(ex);
+                }
+                if (i + 1 < retries) {
+                    HostLimiter.backoff(i + 1, ex);
+                }
+            }
+        }
+        throw exception;
+    }
+}
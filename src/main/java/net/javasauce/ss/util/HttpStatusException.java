@@ -0,0 +1,20 @@
+package net.javasauce.ss.util;
+
+import java.io.IOException;
+
+/**
+ * Thrown by a {@link HttpTransport} when the server responds with an unexpected status code.
+ */
+public final class HttpStatusException extends IOException {
+
+    private final int statusCode;
+
+    public HttpStatusException(String url, int statusCode) {
+        super("Unexpected response " + statusCode + " for " + url);
+        this.statusCode = statusCode;
+    }
+
+    public int statusCode() {
+        return statusCode;
+    }
+}
@@ -0,0 +1,87 @@
+package net.javasauce.ss.util;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.Optional;
+
+/**
+ * Makes the conditional GET requests behind {@link HttpCache}.
+ * <p>
+ * Everything else, such as JDK provisioning and webhooks, is made with a Quack {@code HttpEngine} directly.
+ */
+public interface HttpTransport {
+
+    /**
+     * Make a GET request for the given url.
+     * <p>
+     * If {@code conditional} is set, the request is made using the ETag and Last-Modified values
+     * of the destination, nothing is written if the server reports it has not changed. The destination's
+     * values are updated from a successful response.
+     *
+     * @param url         The url.
+     * @param dest        The destination for the response.
+     * @param conditional If the request should be conditional.
+     * @return If the server reported the destination as up-to-date.
+     * @throws HttpStatusException If the server responded with an unexpected status code.
+     */
+    boolean get(String url, Dest dest, boolean conditional) throws IOException;
+
+    /**
+     * Make an unconditional GET request for a range of bytes of the given url.
+     *
+     * @param url    The url.
+     * @param offset The offset of the first byte.
+     * @param len    The number of bytes.
+     * @return The bytes, or {@code null} if this transport, or the server, doesn't support ranged requests.
+     * @throws HttpStatusException If the server responded with an unexpected status code.
+     */
+    default byte @Nullable [] getRange(String url, long offset, int len) throws IOException {
+        return null;
+    }
+
+    /**
+     * Get the file responses for the given url are recorded to, if this transport records them.
+     *
+     * @param url The url.
+     * @return The file, which may not exist yet.
+     */
+    default Optional<Path> recordedFile(String url) {
+        return Optional.empty();
+    }
+
+    /**
+     * Record the given file as the response for the given url, if this transport records
+     * responses and hasn't already. For when a request was skipped, as a local copy was
+     * already known to be valid.
+     *
+     * @param url  The url.
+     * @param file The file, identical to the response.
+     */
+    default void recordLocal(String url, Path file) throws IOException {
+    }
+
+    /**
+     * The destination for a response.
+     */
+    interface Dest {
+
+        /**
+         * Called once the response has started, to open the stream the body is written to.
+         * The stream is closed by the transport.
+         *
+         * @return The stream.
+         */
+        OutputStream getOutputStream() throws IOException;
+
+        @Nullable String getEtag();
+
+        void setEtag(@Nullable String etag);
+
+        long getLastModified();
+
+        void setLastModified(long time);
+    }
+}
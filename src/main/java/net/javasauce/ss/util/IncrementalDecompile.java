@@ -0,0 +1,284 @@
+package net.javasauce.ss.util;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import net.covers1624.quack.gson.JsonUtils;
+import net.covers1624.quack.io.IOUtils;
+import net.javasauce.ss.tasks.DecompileTask;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Helpers for decompiling only the classes of a jar which changed since a previous jar,
+ * re-using the previous decompiled output for everything else.
+ * <p>
+ * Classes are tracked by their top level class, as that is the granularity of the decompiler's
+ * output. A top level class is affected if it, or any of its inner classes, changed. Or if any of
+ * its supertypes are affected, transitively, as it inherits their members. Affected classes are
+ * decompiled again, along with every class directly referencing one, as their signatures and
+ * members may be inlined into its output.
+ * <p>
+ * Constant values and member descriptors are compiled into the classes using them, a change
+ * to either already shows up as a change to those classes, however far it propagated.
+ */
+public final class IncrementalDecompile {
+
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+    private static final Pattern DESCRIPTOR_CLASS = Pattern.compile("L([^;\\[()<>.]+);");
+
+    private IncrementalDecompile() {
+    }
+
+    /**
+     * Work out which top level classes need decompiling.
+     *
+     * @param previousJar The jar the previous output was decompiled from.
+     * @param jar         The jar to decompile.
+     * @return The plan.
+     */
+    public static Plan plan(Path previousJar, Path jar) throws IOException {
+        var previous = groupByTopLevel(JarDiff.readClassEntries(previousJar));
+        var current = groupByTopLevel(JarDiff.readClassEntries(jar));
+
+        Set<String> changed = new TreeSet<>();
+        current.forEach((name, members) -> {
+            if (!members.equals(previous.get(name))) {
+                changed.add(name);
+            }
+        });
+
+        // Classes which were removed affect their users the same as changed ones.
+        Set<String> affected = new HashSet<>(changed);
+        for (String name : previous.keySet()) {
+            if (!current.containsKey(name)) {
+                affected.add(name);
+            }
+        }
+
+        // By the top level class they reference, or extend/implement.
+        Map<String, Set<String>> referencedBy = new HashMap<>();
+        Map<String, Set<String>> subtypes = new HashMap<>();
+        try (ZipFile zip = new ZipFile(jar.toFile())) {
+            var entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                var entry = entries.nextElement();
+                if (!entry.getName().endsWith(".class")) continue;
+
+                var name = topLevel(entry.getName().substring(0, entry.getName().length() - 6));
+                byte[] bytes;
+                try (var is = zip.getInputStream(entry)) {
+                    bytes = is.readAllBytes();
+                }
+                var refs = readReferences(bytes);
+                for (String supertype : refs.supertypes()) {
+                    subtypes.computeIfAbsent(topLevel(supertype), e -> new HashSet<>()).add(name);
+                }
+                for (String ref : refs.classes()) {
+                    referencedBy.computeIfAbsent(topLevel(ref), e -> new HashSet<>()).add(name);
+                }
+            }
+        }
+
+        Deque<String> queue = new ArrayDeque<>(affected);
+        while (!queue.isEmpty()) {
+            for (String subtype : subtypes.getOrDefault(queue.pop(), Set.of())) {
+                if (affected.add(subtype)) {
+                    queue.add(subtype);
+                }
+            }
+        }
+
+        Set<String> decompile = new TreeSet<>();
+        for (String name : affected) {
+            if (current.containsKey(name)) {
+                decompile.add(name);
+            }
+            decompile.addAll(referencedBy.getOrDefault(name, Set.of()));
+        }
+        Set<String> reuse = new TreeSet<>(current.keySet());
+        reuse.removeAll(decompile);
+        return new Plan(changed.size(), Collections.unmodifiableSet(decompile), Collections.unmodifiableSet(reuse));
+    }
+
+    /**
+     * Write a jar containing only the given top level classes, and their inner classes.
+     *
+     * @param jar       The full jar.
+     * @param topLevels The top level classes to keep.
+     * @param output    The jar to write.
+     */
+    public static void writeSubsetJar(Path jar, Set<String> topLevels, Path output) throws IOException {
+        try (ZipFile zip = new ZipFile(jar.toFile());
+             OutputStream os = Files.newOutputStream(IOUtils.makeParents(output));
+             ZipOutputStream zos = new ZipOutputStream(os)) {
+            var entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                var entry = entries.nextElement();
+                var name = entry.getName();
+                if (!name.endsWith(".class")) continue;
+                if (!topLevels.contains(topLevel(name.substring(0, name.length() - 6)))) continue;
+
+                zos.putNextEntry(new ZipEntry(name));
+                try (var is = zip.getInputStream(entry)) {
+                    is.transferTo(zos);
+                }
+                zos.closeEntry();
+            }
+        }
+    }
+
+    /**
+     * Copy the previous output for the given top level classes into the new output,
+     * and merge their test stats.
+     *
+     * @param previousOutput The previous decompiler output.
+     * @param output         The new decompiler output, containing only the decompiled classes.
+     * @param reuse          The top level classes to take from the previous output.
+     */
+    public static void mergePrevious(Path previousOutput, Path output, Set<String> reuse) throws IOException {
+        var previousSources = previousOutput.resolve(DecompileTask.SOURCES);
+        var sources = output.resolve(DecompileTask.SOURCES);
+        if (Files.exists(previousSources)) {
+            try (Stream<Path> files = Files.walk(previousSources)) {
+                for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+                    var relative = previousSources.relativize(file);
+                    if (!reuse.contains(outputClass(relative))) continue;
+
+                    var target = sources.resolve(relative.toString());
+                    // Anything the decompiler produced this time wins.
+                    if (Files.exists(target)) continue;
+                    Files.copy(file, IOUtils.makeParents(target), StandardCopyOption.COPY_ATTRIBUTES);
+                }
+            }
+        }
+        mergeTestStats(previousOutput.resolve(DecompileTask.TEST_STATS), output.resolve(DecompileTask.TEST_STATS), reuse);
+    }
+
+    /**
+     * Find the top level class a file in the decompiler output belongs to.
+     *
+     * @param relative The path of the file, relative to the sources directory.
+     * @return The internal name of the class.
+     */
+    public static String outputClass(Path relative) {
+        var path = relative.toString().replace('\\', '/');
+        int slash = path.lastIndexOf('/');
+        // Source files, and any reports written next to them: Foo.java, Foo.java.txt, etc.
+        int dot = path.indexOf('.', slash + 1);
+        return topLevel(dot == -1 ? path : path.substring(0, dot));
+    }
+
+    private static void mergeTestStats(Path previousStats, Path stats, Set<String> reuse) throws IOException {
+        if (Files.notExists(previousStats)) return;
+
+        var previous = JsonUtils.parse(GSON, previousStats, JsonObject.class, StandardCharsets.UTF_8);
+        var current = Files.exists(stats) ? JsonUtils.parse(GSON, stats, JsonObject.class, StandardCharsets.UTF_8) : new JsonObject();
+        if (previous == null || !previous.has("cases")) return;
+        if (current == null) current = new JsonObject();
+        if (!current.has("cases")) current.add("cases", new JsonObject());
+
+        var cases = current.getAsJsonObject("cases");
+        for (var entry : previous.getAsJsonObject("cases").entrySet()) {
+            if (cases.has(entry.getKey())) continue;
+            if (!reuse.contains(topLevel(entry.getKey().replace('.', '/')))) continue;
+
+            cases.add(entry.getKey(), entry.getValue());
+        }
+        JsonUtils.write(GSON, IOUtils.makeParents(stats), current, JsonObject.class, StandardCharsets.UTF_8);
+    }
+
+    private static Map<String, Map<String, JarDiff.Entry>> groupByTopLevel(Map<String, JarDiff.Entry> entries) {
+        Map<String, Map<String, JarDiff.Entry>> grouped = new HashMap<>();
+        entries.forEach((name, entry) -> grouped.computeIfAbsent(topLevel(name), e -> new HashMap<>()).put(name, entry));
+        return grouped;
+    }
+
+    private static String topLevel(String name) {
+        int slash = name.lastIndexOf('/');
+        int dollar = name.indexOf('$', slash + 1);
+        return dollar == -1 ? name : name.substring(0, dollar);
+    }
+
+    // The classes referenced by a class file's constant pool, by name or from descriptors and signatures.
+    // Along with its direct supertypes.
+    private static References readReferences(byte[] bytes) throws IOException {
+        var buf = ByteBuffer.wrap(bytes);
+        if (buf.getInt() != 0xCAFEBABE) throw new IOException("Not a class file.");
+        buf.position(8);
+
+        int count = Short.toUnsignedInt(buf.getShort());
+        String[] utf8 = new String[count];
+        int[] classNames = new int[count];
+        for (int i = 1; i < count; i++) {
+            int tag = Byte.toUnsignedInt(buf.get());
+            switch (tag) {
+                case 1 -> {
+                    byte[] str = new byte[Short.toUnsignedInt(buf.getShort())];
+                    buf.get(str);
+                    utf8[i] = new String(str, StandardCharsets.UTF_8);
+                }
+                case 7 -> classNames[i] = Short.toUnsignedInt(buf.getShort());
+                case 8, 16, 19, 20 -> buf.position(buf.position() + 2);
+                case 15 -> buf.position(buf.position() + 3);
+                case 3, 4, 9, 10, 11, 12, 17, 18 -> buf.position(buf.position() + 4);
+                case 5, 6 -> {
+                    buf.position(buf.position() + 8);
+                    // Longs and doubles take two slots.
+                    i++;
+                }
+                default -> throw new IOException("Unknown constant pool tag " + tag);
+            }
+        }
+
+        Set<String> classes = new HashSet<>();
+        for (int index : classNames) {
+            var name = utf8[index];
+            if (name != null && !name.startsWith("[")) {
+                classes.add(name);
+            }
+        }
+        for (String str : utf8) {
+            if (str == null || str.indexOf(';') == -1) continue;
+
+            var matcher = DESCRIPTOR_CLASS.matcher(str);
+            while (matcher.find()) {
+                classes.add(matcher.group(1));
+            }
+        }
+
+        // access_flags, this_class
+        buf.position(buf.position() + 4);
+        Set<String> supertypes = new HashSet<>();
+        int superClass = Short.toUnsignedInt(buf.getShort());
+        if (superClass != 0) {
+            supertypes.add(utf8[classNames[superClass]]);
+        }
+        int interfaces = Short.toUnsignedInt(buf.getShort());
+        for (int i = 0; i < interfaces; i++) {
+            supertypes.add(utf8[classNames[Short.toUnsignedInt(buf.getShort())]]);
+        }
+        return new References(classes, supertypes);
+    }
+
+    private record References(Set<String> classes, Set<String> supertypes) { }
+
+    /**
+     * @param changed   The number of top level classes which changed themselves.
+     * @param decompile The top level classes to decompile, changed classes, their subtypes and dependents.
+     * @param reuse     The top level classes to re-use from the previous output.
+     */
+    public record Plan(int changed, Set<String> decompile, Set<String> reuse) { }
+}
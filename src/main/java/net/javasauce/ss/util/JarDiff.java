@@ -0,0 +1,198 @@
+package net.javasauce.ss.util;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * The classes which differ between two jars.
+ * <p>
+ * Only the zip central directories are read, entries are compared by their CRC32
+ * and uncompressed size, nothing is ever inflated. Diffing two client jars costs a
+ * couple of small reads from the end of each file. Jars which aren't available locally
+ * are read with ranged requests, instead of downloading them.
+ */
+public record JarDiff(List<String> added, List<String> removed, List<String> changed) {
+
+    private static final int EOCD_SIGNATURE = 0x06054b50;
+    private static final int EOCD_LENGTH = 22;
+    private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+    private static final int ZIP64_LOCATOR_LENGTH = 20;
+    private static final int ZIP64_EOCD_SIGNATURE = 0x06064b50;
+    private static final int CEN_SIGNATURE = 0x02014b50;
+    private static final int CEN_LENGTH = 46;
+    private static final int MAX_COMMENT = 0xFFFF;
+
+    /**
+     * Compute the class level diff between two jars.
+     *
+     * @param from The old jar.
+     * @param to   The new jar.
+     * @return The diff, class names are in internal form without the {@code .class} suffix.
+     */
+    public static JarDiff compute(Path from, Path to) throws IOException {
+        return compute(readClassEntries(from), readClassEntries(to));
+    }
+
+    /**
+     * Compute the class level diff between two sets of class entries.
+     *
+     * @param fromEntries The entries of the old jar.
+     * @param toEntries   The entries of the new jar.
+     * @return The diff, class names are in internal form without the {@code .class} suffix.
+     */
+    public static JarDiff compute(Map<String, Entry> fromEntries, Map<String, Entry> toEntries) {
+        List<String> added = new ArrayList<>();
+        List<String> removed = new ArrayList<>();
+        List<String> changed = new ArrayList<>();
+        toEntries.forEach((name, entry) -> {
+            var old = fromEntries.get(name);
+            if (old == null) {
+                added.add(name);
+            } else if (!old.equals(entry)) {
+                changed.add(name);
+            }
+        });
+        for (String name : fromEntries.keySet()) {
+            if (!toEntries.containsKey(name)) {
+                removed.add(name);
+            }
+        }
+        return new JarDiff(List.copyOf(added), List.copyOf(removed), List.copyOf(changed));
+    }
+
+    public boolean isEmpty() {
+        return added.isEmpty() && removed.isEmpty() && changed.isEmpty();
+    }
+
+    public Stats stats() {
+        return new Stats(added.size(), removed.size(), changed.size());
+    }
+
+    /**
+     * Read the class entries from the central directory of the given jar.
+     *
+     * @param jar The jar.
+     * @return The entries, keyed by class name, sorted.
+     */
+    public static SortedMap<String, Entry> readClassEntries(Path jar) throws IOException {
+        try (FileChannel channel = FileChannel.open(jar, StandardOpenOption.READ)) {
+            return readClassEntries(jar.toString(), channel.size(), (offset, len) -> read(channel, offset, len));
+        }
+    }
+
+    /**
+     * Read the class entries from the central directory of the jar at the given url.
+     * <p>
+     * Only the end of the jar is requested, using ranged requests.
+     *
+     * @param http The {@link HttpCache} to make requests with.
+     * @param url  The url of the jar.
+     * @param size The size of the jar, in bytes.
+     * @return The entries, keyed by class name, sorted.
+     * @throws IOException If the server doesn't support ranged requests, amongst the usual reasons.
+     */
+    public static SortedMap<String, Entry> readClassEntries(HttpCache http, String url, long size) throws IOException {
+        return readClassEntries(url, size, (offset, len) -> {
+            var bytes = http.getRange(url, offset, len);
+            if (bytes == null) throw new IOException("Ranged requests not supported for " + url);
+            if (bytes.length != len) throw new IOException("Expected " + len + " bytes from " + url + ", got " + bytes.length);
+            return ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        });
+    }
+
+    static SortedMap<String, Entry> readClassEntries(String name, long fileSize, RangeReader reader) throws IOException {
+        var cen = readCentralDirectory(reader, fileSize);
+
+        SortedMap<String, Entry> entries = new TreeMap<>();
+        while (cen.remaining() >= CEN_LENGTH) {
+            int start = cen.position();
+            if (cen.getInt(start) != CEN_SIGNATURE) throw new IOException("Invalid central directory entry in " + name);
+
+            long crc = Integer.toUnsignedLong(cen.getInt(start + 16));
+            long size = Integer.toUnsignedLong(cen.getInt(start + 24));
+            int nameLen = Short.toUnsignedInt(cen.getShort(start + 28));
+            int extraLen = Short.toUnsignedInt(cen.getShort(start + 30));
+            int commentLen = Short.toUnsignedInt(cen.getShort(start + 32));
+
+            byte[] nameBytes = new byte[nameLen];
+            cen.get(start + CEN_LENGTH, nameBytes);
+            var entryName = new String(nameBytes, StandardCharsets.UTF_8);
+            if (entryName.endsWith(".class")) {
+                entries.put(entryName.substring(0, entryName.length() - 6), new Entry(crc, size));
+            }
+            cen.position(start + CEN_LENGTH + nameLen + extraLen + commentLen);
+        }
+        return entries;
+    }
+
+    private static ByteBuffer readCentralDirectory(RangeReader reader, long fileSize) throws IOException {
+        // The end of central directory record sits behind a variable length comment, scan backwards for it.
+        int tailLen = (int) Math.min(fileSize, EOCD_LENGTH + MAX_COMMENT + ZIP64_LOCATOR_LENGTH);
+        var tail = reader.read(fileSize - tailLen, tailLen);
+        int eocd = -1;
+        for (int i = tailLen - EOCD_LENGTH; i >= 0; i--) {
+            // The comment may contain the signature too, only the real record's comment ends the file.
+            if (tail.getInt(i) == EOCD_SIGNATURE && i + EOCD_LENGTH + Short.toUnsignedInt(tail.getShort(i + 20)) == tailLen) {
+                eocd = i;
+                break;
+            }
+        }
+        if (eocd == -1) throw new IOException("Not a zip file, no end of central directory record.");
+
+        long cenSize = Integer.toUnsignedLong(tail.getInt(eocd + 12));
+        long cenOffset = Integer.toUnsignedLong(tail.getInt(eocd + 16));
+        if (cenSize == 0xFFFFFFFFL || cenOffset == 0xFFFFFFFFL) {
+            int locator = eocd - ZIP64_LOCATOR_LENGTH;
+            if (locator < 0 || tail.getInt(locator) != ZIP64_LOCATOR_SIGNATURE) throw new IOException("Missing zip64 end of central directory locator.");
+
+            var zip64Eocd = reader.read(tail.getLong(locator + 8), 56);
+            if (zip64Eocd.getInt(0) != ZIP64_EOCD_SIGNATURE) throw new IOException("Invalid zip64 end of central directory record.");
+            cenSize = zip64Eocd.getLong(40);
+            cenOffset = zip64Eocd.getLong(48);
+        }
+        if (cenSize > Integer.MAX_VALUE) throw new IOException("Central directory too large: " + cenSize);
+        if (cenOffset + cenSize > fileSize) throw new IOException("Central directory out of bounds.");
+
+        return reader.read(cenOffset, (int) cenSize);
+    }
+
+    private static ByteBuffer read(FileChannel channel, long offset, int len) throws IOException {
+        var buffer = ByteBuffer.allocate(len).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) == -1) throw new EOFException();
+        }
+        return buffer.flip();
+    }
+
+    // Reads a range of bytes from a jar, as a little endian buffer.
+    interface RangeReader {
+
+        ByteBuffer read(long offset, int len) throws IOException;
+    }
+
+    /**
+     * A class entry in a jar.
+     *
+     * @param crc  The CRC32 of the uncompressed class.
+     * @param size The uncompressed size of the class.
+     */
+    public record Entry(long crc, long size) { }
+
+    /**
+     * The number of classes added, removed and changed.
+     */
+    public record Stats(int added, int removed, int changed) {
+
+        @Override
+        public String toString() {
+            return added + " added, " + removed + " removed, " + changed + " changed";
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package net.javasauce.ss.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+/**
+ * A {@link HttpTransport} backed by {@link HttpClient}.
+ * <p>
+ * A single client is shared by every request, connections are kept alive and pooled
+ * per origin, and HTTP/2 is negotiated where the server supports it, multiplexing
+ * concurrent requests to the same host over one connection.
+ */
+public final class JavaHttpTransport implements HttpTransport {
+
+    private final HttpClient client;
+
+    public JavaHttpTransport() {
+        this(HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(Duration.ofSeconds(30))
+                .build()
+        );
+    }
+
+    public JavaHttpTransport(HttpClient client) {
+        this.client = client;
+    }
+
+    @Override
+    public boolean get(String url, Dest dest, boolean conditional) throws IOException {
+        var request = HttpRequest.newBuilder(URI.create(url))
+                .GET();
+        if (conditional) {
+            var etag = dest.getEtag();
+            if (etag != null) {
+                request.header("If-None-Match", etag);
+            }
+            if (dest.getLastModified() >= 0) {
+                var time = ZonedDateTime.ofInstant(Instant.ofEpochMilli(dest.getLastModified()), ZoneOffset.UTC);
+                request.header("If-Modified-Since", DateTimeFormatter.RFC_1123_DATE_TIME.format(time));
+            }
+        }
+
+        HttpResponse<InputStream> response = send(url, request.build());
+
+        try (InputStream is = response.body()) {
+            if (conditional && response.statusCode() == 304) return true;
+            if (response.statusCode() != 200) throw new HttpStatusException(url, response.statusCode());
+
+            var headers = response.headers();
+            dest.setEtag(headers.firstValue("ETag").orElse(null));
+            dest.setLastModified(headers.firstValue("Last-Modified").map(JavaHttpTransport::parseDate).orElse(-1L));
+            try (OutputStream os = dest.getOutputStream()) {
+                is.transferTo(os);
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public byte[] getRange(String url, long offset, int len) throws IOException {
+        var request = HttpRequest.newBuilder(URI.create(url))
+                .GET()
+                .header("Range", "bytes=" + offset + "-" + (offset + len - 1));
+
+        HttpResponse<InputStream> response = send(url, request.build());
+        try (InputStream is = response.body()) {
+            // The server ignored the range, don't read the whole thing.
+            if (response.statusCode() == 200) return null;
+            if (response.statusCode() != 206) throw new HttpStatusException(url, response.statusCode());
+
+            return is.readAllBytes();
+        }
+    }
+
+    private HttpResponse<InputStream> send(String url, HttpRequest request) throws IOException {
+        try {
+            return client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            var ioEx = new InterruptedIOException("Interrupted requesting " + url);
+            ioEx.initCause(ex);
+            throw ioEx;
+        }
+    }
+
+    private static long parseDate(String date) {
+        try {
+            return ZonedDateTime.parse(date, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+        } catch (DateTimeParseException ex) {
+            return -1;
+        }
+    }
+}
@@ -17,12 +17,21 @@ import java.util.function.Supplier;
  */
 public final class JdkProvider {
 
+    private final Path baseInstallDir;
     private final JavaLocator locator;
     private final JdkInstallationManager installer;
+    private final boolean offline;
 
     private final Supplier<List<JavaInstall>> installs;
 
-    public JdkProvider(Path baseInstallDir, HttpEngine httpEngine) {
+    /**
+     * @param baseInstallDir The directory to provision JDKs into.
+     * @param httpEngine     The engine to provision JDKs with.
+     * @param offline        If provisioning should be refused, only JDKs installed on the system are used.
+     */
+    public JdkProvider(Path baseInstallDir, HttpEngine httpEngine, boolean offline) {
+        this.baseInstallDir = baseInstallDir;
+        this.offline = offline;
         locator = JavaLocator.builder()
                 .useJavaw()
                 .findGradleJdks()
@@ -46,8 +55,13 @@ public final class JdkProvider {
                 return javaInstall.javaHome;
             }
         }
+        if (offline) {
+            // Provisioning goes straight to the network, JDKs aren't recorded to the artifact mirror.
+            throw new RuntimeException("No JDK " + version + " is installed, and one can't be provisioned whilst offline. Install one locally.");
+        }
         try {
-            synchronized (installer) {
+            // The install dir may be shared with other processes.
+            try (var lock = ProcessLock.acquire(baseInstallDir.resolve(".lock"))) {
                 return installer.provisionJdk(new JdkInstallationManager.ProvisionRequest.Builder()
                         .forVersion(version)
                         .build()
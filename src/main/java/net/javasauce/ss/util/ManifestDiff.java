@@ -0,0 +1,69 @@
+package net.javasauce.ss.util;
+
+import net.covers1624.quack.collection.FastStream;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A semantic diff between two version manifests, only considering
+ * the fields which affect the output of SnowShovel.
+ * <p>
+ * Each change is classified by the work it requires, see {@link #impact()}.
+ */
+public record ManifestDiff(List<String> changes, ChangeImpact impact) {
+
+    // Only used to compute library downloads for comparison, never touched on disk.
+    private static final Path LIBRARIES_DIR = Path.of("libraries");
+
+    public static ManifestDiff compute(VersionManifest a, VersionManifest b) {
+        List<String> changes = new ArrayList<>();
+        var impact = ChangeImpact.REGENERATE;
+        // The type is part of the branch name, a new branch has nothing to re-use.
+        if (!a.type().equals(b.type())) {
+            changes.add("type");
+            impact = ChangeImpact.DECOMPILE;
+        }
+        if (!Objects.equals(sha1(a, "client"), sha1(b, "client"))) {
+            changes.add("client");
+            impact = ChangeImpact.DECOMPILE;
+        }
+        if (!Objects.equals(sha1(a, "client_mappings"), sha1(b, "client_mappings"))) {
+            changes.add("client_mappings");
+            impact = ChangeImpact.DECOMPILE;
+        }
+        if (a.computeJavaVersion() != b.computeJavaVersion()) {
+            changes.add("javaVersion");
+            impact = impact.max(ChangeImpact.RETEST);
+        }
+        var aLibs = LibraryDownload.getVersionLibraries(a, LIBRARIES_DIR);
+        var bLibs = LibraryDownload.getVersionLibraries(b, LIBRARIES_DIR);
+        if (!libraryArtifacts(aLibs).equals(libraryArtifacts(bLibs))) {
+            changes.add("libraries");
+            impact = impact.max(ChangeImpact.RETEST);
+        } else if (!aLibs.equals(bLibs)) {
+            // Same jars from somewhere else, only the generated project may care.
+            changes.add("libraryUrls");
+        }
+        return new ManifestDiff(List.copyOf(changes), impact);
+    }
+
+    private static @Nullable String sha1(VersionManifest manifest, String download) {
+        var dl = manifest.downloads().get(download);
+        return dl != null ? dl.sha1() : null;
+    }
+
+    // The notation and hash of each library, what ends up on the decompiler's classpath.
+    private static List<String> libraryArtifacts(List<LibraryDownload> libraries) {
+        return FastStream.of(libraries)
+                .map(e -> e.notation() + "@" + e.sha1())
+                .toList();
+    }
+
+    public boolean isEmpty() {
+        return changes.isEmpty();
+    }
+}
@@ -0,0 +1,117 @@
+package net.javasauce.ss.util;
+
+import net.covers1624.quack.io.IOUtils;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A single file snapshot of version manifest json, keyed by the manifest sha1
+ * from the version list manifest.
+ * <p>
+ * This allows us to read every manifest in one go, instead of validating and
+ * reading hundreds of individual json files.
+ */
+public class ManifestSnapshot {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ManifestSnapshot.class);
+
+    private static final int MAGIC = 0x534E4F57; // SNOW
+    private static final int FORMAT_VERSION = 1;
+
+    private final Path file;
+    private final Map<String, byte[]> entries = new ConcurrentHashMap<>();
+    private volatile boolean dirty;
+
+    private ManifestSnapshot(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Load the snapshot from the given file.
+     * <p>
+     * If the file does not exist, or is unable to be read, an empty
+     * snapshot is returned.
+     *
+     * @param file The file.
+     * @return The snapshot.
+     */
+    public static ManifestSnapshot load(Path file) {
+        var snapshot = new ManifestSnapshot(file);
+        if (Files.notExists(file)) return snapshot;
+
+        try (DataInputStream din = new DataInputStream(new BufferedInputStream(new GZIPInputStream(Files.newInputStream(file))))) {
+            if (din.readInt() != MAGIC || din.readInt() != FORMAT_VERSION) {
+                LOGGER.warn("Ignoring manifest snapshot {}, unknown format.", file);
+                return snapshot;
+            }
+            int count = din.readInt();
+            for (int i = 0; i < count; i++) {
+                String sha1 = din.readUTF();
+                byte[] bytes = new byte[din.readInt()];
+                din.readFully(bytes);
+                snapshot.entries.put(sha1, bytes);
+            }
+        } catch (IOException ex) {
+            LOGGER.warn("Failed to read manifest snapshot {}. Ignoring.", file, ex);
+            snapshot.entries.clear();
+        }
+        return snapshot;
+    }
+
+    public @Nullable byte[] get(String sha1) {
+        return entries.get(sha1);
+    }
+
+    public void put(String sha1, byte[] bytes) {
+        if (entries.put(sha1, bytes) == null) {
+            dirty = true;
+        }
+    }
+
+    /**
+     * Remove any entries not in the given set.
+     *
+     * @param retain The sha1's to keep in the snapshot.
+     */
+    public void retainOnly(Set<String> retain) {
+        if (entries.keySet().retainAll(retain)) {
+            dirty = true;
+        }
+    }
+
+    /**
+     * Save the snapshot if it has changed.
+     */
+    public void save() throws IOException {
+        if (!dirty) return;
+
+        // Sorted, so the file is stable for the same set of manifests.
+        Map<String, byte[]> sorted = new TreeMap<>(entries);
+        // Other processes may be sharing this file, each writes its own temp file and the move is atomic.
+        Path tempFile = Files.createTempFile(IOUtils.makeParents(file).getParent(), file.getFileName().toString(), ".tmp");
+        try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(tempFile))))) {
+            dos.writeInt(MAGIC);
+            dos.writeInt(FORMAT_VERSION);
+            dos.writeInt(sorted.size());
+            for (var entry : sorted.entrySet()) {
+                dos.writeUTF(entry.getKey());
+                dos.writeInt(entry.getValue().length);
+                dos.write(entry.getValue());
+            }
+        }
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        dirty = false;
+    }
+}
@@ -0,0 +1,162 @@
+package net.javasauce.ss.util;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+
+/**
+ * A {@link HttpTransport} which mirrors requests to an {@link ArtifactMirror}.
+ * <p>
+ * Whilst recording, successful responses are written to the mirror as they are handed
+ * back, so any run populates the mirror with everything it downloaded. Requests for urls
+ * not yet mirrored are made unconditionally, so a local copy being up-to-date doesn't leave
+ * a hole in the mirror. Downloads which skip the request entirely, as their local file is
+ * already valid, record that file instead, see {@link #recordLocal}.
+ * <p>
+ * Whilst offline, requests are served from the mirror without touching the network.
+ * <p>
+ * Ranged requests are never recorded, whilst offline they are served from the mirrored
+ * copy if there is one.
+ */
+public final class MirrorTransport implements HttpTransport {
+
+    private final @Nullable HttpTransport delegate;
+    private final ArtifactMirror mirror;
+
+    private MirrorTransport(@Nullable HttpTransport delegate, ArtifactMirror mirror) {
+        this.delegate = delegate;
+        this.mirror = mirror;
+    }
+
+    /**
+     * Make requests with the given transport, recording responses to the mirror.
+     *
+     * @param delegate The transport to make requests with.
+     * @param mirror   The mirror to record to.
+     * @return The transport.
+     */
+    public static MirrorTransport recording(HttpTransport delegate, ArtifactMirror mirror) {
+        return new MirrorTransport(delegate, mirror);
+    }
+
+    /**
+     * Serve requests only from the mirror.
+     *
+     * @param mirror The mirror.
+     * @return The transport.
+     */
+    public static MirrorTransport offline(ArtifactMirror mirror) {
+        return new MirrorTransport(null, mirror);
+    }
+
+    @Override
+    public boolean get(String url, Dest dest, boolean conditional) throws IOException {
+        var file = mirror.pathFor(url);
+        if (delegate == null) {
+            if (Files.notExists(file)) throw new ArtifactMirror.NotMirroredException(url);
+
+            // The mirror has no validators, always hand back the mirrored copy.
+            try (OutputStream os = dest.getOutputStream()) {
+                Files.copy(file, os);
+            }
+            return false;
+        }
+
+        var recording = new RecordingDest(dest);
+        try {
+            if (delegate.get(url, recording, conditional && Files.exists(file))) return true;
+
+            try (var is = Files.newInputStream(recording.tempFile())) {
+                mirror.store(url, is);
+            }
+            return false;
+        } finally {
+            if (recording.tempFile != null) {
+                Files.deleteIfExists(recording.tempFile);
+            }
+        }
+    }
+
+    @Override
+    public byte @Nullable [] getRange(String url, long offset, int len) throws IOException {
+        if (delegate != null) return delegate.getRange(url, offset, len);
+
+        var file = mirror.pathFor(url);
+        if (Files.notExists(file)) throw new ArtifactMirror.NotMirroredException(url);
+
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            var buffer = ByteBuffer.allocate(len);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, offset + buffer.position()) == -1) throw new EOFException();
+            }
+            return buffer.array();
+        }
+    }
+
+    @Override
+    public Optional<Path> recordedFile(String url) {
+        if (delegate == null) return Optional.empty();
+
+        return Optional.of(mirror.pathFor(url));
+    }
+
+    @Override
+    public void recordLocal(String url, Path file) throws IOException {
+        if (delegate == null || Files.exists(mirror.pathFor(url))) return;
+
+        try (var is = Files.newInputStream(file)) {
+            mirror.store(url, is);
+        }
+    }
+
+    private static final class RecordingDest implements Dest {
+
+        private final Dest dest;
+        private @Nullable Path tempFile;
+
+        RecordingDest(Dest dest) {
+            this.dest = dest;
+        }
+
+        Path tempFile() throws IOException {
+            if (tempFile == null) throw new IOException("Response body was never written.");
+            return tempFile;
+        }
+
+        @Override
+        public OutputStream getOutputStream() throws IOException {
+            var os = dest.getOutputStream();
+            tempFile = Files.createTempFile("mirror", ".part");
+            var recorded = Files.newOutputStream(tempFile);
+            return new OutputStream() {
+                // @formatter:off
+                @Override public void write(int b) throws IOException { os.write(b); recorded.write(b); }
+                @Override public void write(byte[] b, int off, int len) throws IOException { os.write(b, off, len); recorded.write(b, off, len); }
+                @Override public void flush() throws IOException { os.flush(); recorded.flush(); }
+                // @formatter:on
+
+                @Override
+                public void close() throws IOException {
+                    try (os; recorded) {
+                        flush();
+                    }
+                }
+            };
+        }
+
+        // @formatter:off
+        @Override public @Nullable String getEtag() { return dest.getEtag(); }
+        @Override public void setEtag(@Nullable String etag) { dest.setEtag(etag); }
+        @Override public long getLastModified() { return dest.getLastModified(); }
+        @Override public void setLastModified(long time) { dest.setLastModified(time); }
+        // @formatter:on
+    }
+}
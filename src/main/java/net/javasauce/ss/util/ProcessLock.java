@@ -0,0 +1,69 @@
+package net.javasauce.ss.util;
+
+import net.covers1624.quack.io.IOUtils;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An exclusive lock backed by a lock file, held against other threads
+ * in this process, and against other processes sharing the file.
+ * <p>
+ * Used to guard directories shared between multiple SnowShovel processes on the same
+ * machine, such as the tools and libraries directories. Not re-entrant, a thread must
+ * not acquire the same lock twice.
+ */
+public final class ProcessLock implements AutoCloseable {
+
+    // FileChannel locks are held by the whole JVM, so threads need to be excluded separately.
+    private static final Map<Path, ReentrantLock> LOCAL_LOCKS = new ConcurrentHashMap<>();
+
+    private final ReentrantLock localLock;
+    private final FileChannel channel;
+    private final FileLock fileLock;
+
+    private ProcessLock(ReentrantLock localLock, FileChannel channel, FileLock fileLock) {
+        this.localLock = localLock;
+        this.channel = channel;
+        this.fileLock = fileLock;
+    }
+
+    /**
+     * Acquire the lock for the given file, blocking until it is available.
+     *
+     * @param lockFile The lock file. Created if it does not exist.
+     * @return The held lock, close it to release.
+     */
+    public static ProcessLock acquire(Path lockFile) throws IOException {
+        var path = lockFile.toAbsolutePath().normalize();
+        var localLock = LOCAL_LOCKS.computeIfAbsent(path, e -> new ReentrantLock());
+        localLock.lock();
+        try {
+            var channel = FileChannel.open(IOUtils.makeParents(path), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            try {
+                return new ProcessLock(localLock, channel, channel.lock());
+            } catch (IOException | RuntimeException ex) {
+                channel.close();
+                throw ex;
+            }
+        } catch (IOException | RuntimeException ex) {
+            localLock.unlock();
+            throw ex;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try (channel) {
+            fileLock.release();
+        } finally {
+            localLock.unlock();
+        }
+    }
+}
@@ -7,6 +7,7 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.function.Consumer;
 
 /**
@@ -19,14 +20,19 @@ public class ProcessUtils {
     }
 
     public static ProcessResult runProcess(String executable, List<String> args, Path workingDir, Consumer<String> output) {
+        return runProcess(executable, args, workingDir, Map.of(), output);
+    }
+
+    public static ProcessResult runProcess(String executable, List<String> args, Path workingDir, Map<String, String> env, Consumer<String> output) {
         try {
             List<String> realArgs = new ArrayList<>(args.size() + 1);
             realArgs.add(executable);
             realArgs.addAll(args);
-            Process proc = new ProcessBuilder(realArgs)
+            var builder = new ProcessBuilder(realArgs)
                     .directory(workingDir.toFile())
-                    .redirectErrorStream(true)
-                    .start();
+                    .redirectErrorStream(true);
+            builder.environment().putAll(env);
+            Process proc = builder.start();
             List<String> outputLines = new ArrayList<>();
             try (BufferedReader reader = new BufferedReader(new InputStreamReader(proc.getInputStream(), StandardCharsets.UTF_8))) {
                 reader.lines().forEach(e -> {
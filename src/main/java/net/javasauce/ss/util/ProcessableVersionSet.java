@@ -1,18 +1,22 @@
 package net.javasauce.ss.util;
 
 import net.covers1624.quack.collection.FastStream;
-import net.covers1624.quack.net.httpapi.HttpEngine;
+import net.covers1624.quack.io.IOUtils;
 import net.javasauce.ss.tasks.DownloadTask;
 import net.javasauce.ss.util.task.Task;
 import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
-import java.util.Optional;
-import java.util.concurrent.ForkJoinPool;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
 
 import static java.util.Objects.requireNonNull;
 
@@ -23,22 +27,46 @@ import static java.util.Objects.requireNonNull;
  * <p>
  * Must be explicitly updated via {@link #update()} if a manifest is to be replaced.
  * <p>
+ * Parsed manifests are stored in a {@link ManifestSnapshot} keyed by their sha1, only
+ * manifests missing from the snapshot are downloaded and read from disk individually.
+ * Manifests in the snapshot but missing on disk are written back from it, unless they
+ * are missing from a mirror being recorded.
+ * <p>
  * Created by covers1624 on 7/19/25.
  */
 public class ProcessableVersionSet {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProcessableVersionSet.class);
+
     private static final String VERSION_MANIFEST_URL = "https://piston-meta.mojang.com/mc/game/version_manifest_v2.json";
 
-    private final HttpEngine http;
+    private final HttpCache http;
+    private final Executor downloadExecutor;
     private final Path cacheDir;
+    private final MemoizedSupplier<ManifestSnapshot> snapshot;
+    private final Consumer<List<? extends Task>> taskRunner;
+    // Manifests we have already parsed, by sha1. Shared between the old and new list manifests in update.
+    private final Map<String, VersionManifest> parsedManifests = new ConcurrentHashMap<>();
     private @Nullable VersionListManifest listManifest;
 
     private @Nullable List<String> allVersions;
     private @Nullable Map<String, VersionManifest> versionManifests;
 
-    public ProcessableVersionSet(HttpEngine http, Path cacheDir) {
+    public ProcessableVersionSet(HttpCache http, Executor downloadExecutor, Path cacheDir, Path snapshotFile) {
+        this(http, downloadExecutor, cacheDir, snapshotFile, Task::runTasks);
+    }
+
+    /**
+     * @param downloadExecutor The executor manifest downloads run on.
+     * @param taskRunner       Schedules and waits for the manifest downloads. Tasks using this set
+     *                         should provide their own {@code awaitTasks}, to spawn them as children.
+     */
+    public ProcessableVersionSet(HttpCache http, Executor downloadExecutor, Path cacheDir, Path snapshotFile, Consumer<List<? extends Task>> taskRunner) {
         this.http = http;
+        this.downloadExecutor = downloadExecutor;
         this.cacheDir = cacheDir;
+        this.taskRunner = taskRunner;
+        snapshot = new MemoizedSupplier<>(() -> ManifestSnapshot.load(snapshotFile));
     }
 
     public List<ChangedVersion> update() throws IOException {
@@ -47,7 +75,7 @@ public class ProcessableVersionSet {
         }
 
         var existingDownload = InMemoryDownload.readFrom(cacheDir.resolve("version_manifest_v2.json"));
-        var newDownload = InMemoryDownload.doDownload(http, VERSION_MANIFEST_URL, existingDownload);
+        var newDownload = http.fetch(VERSION_MANIFEST_URL, existingDownload);
         if (newDownload.isUpToDate()) return List.of();
 
         var oldListManifest = existingDownload != null ? VersionListManifest.loadFrom(existingDownload.toString()) : null;
@@ -56,33 +84,46 @@ public class ProcessableVersionSet {
 
         oldListManifest = UnobfuscatedVersions.insert(oldListManifest);
         newListManifest = UnobfuscatedVersions.insert(newListManifest);
+        listManifest = newListManifest;
 
-        Map<String, VersionManifest> oldManifests = FastStream.ofNullable(oldListManifest)
-                .flatMap(this::resolveManifests)
-                .toMap(VersionManifest::id, e -> e);
-        var newManifestsList = FastStream.of(newListManifest)
-                .flatMap(this::resolveManifests)
-                .toList();
-        Map<String, VersionManifest> newManifests = FastStream.of(newManifestsList)
-                .toLinkedHashMap(VersionManifest::id, e -> e);
-
-        // Pre-populate these, so we don't re-load them later when asked for all versions.
-        populateManifests(newManifestsList);
+        Map<String, VersionListManifest.Version> oldVersions = FastStream.ofNullable(oldListManifest)
+                .flatMap(VersionListManifest::versions)
+                .toMap(VersionListManifest.Version::id, e -> e);
 
-        List<ChangedVersion> changes = new ArrayList<>();
+        // Fast path, diff the list entries by sha1. Only manifests that are new or whose sha1 changed need to be touched.
+        List<VersionListManifest.Version> added = new ArrayList<>();
+        List<VersionListManifest.Version> modifiedOld = new ArrayList<>();
+        List<VersionListManifest.Version> modifiedNew = new ArrayList<>();
         for (VersionListManifest.Version version : newListManifest.versions()) {
-            var id = version.id();
-            if (IgnoredVersions.IGNORED_VERSION.contains(id)) continue;
+            if (IgnoredVersions.IGNORED_VERSION.contains(version.id())) continue;
+
+            var oldVersion = oldVersions.get(version.id());
+            if (oldVersion == null) {
+                added.add(version);
+            } else if (!oldVersion.sha1().equals(version.sha1())) {
+                modifiedOld.add(oldVersion);
+                modifiedNew.add(version);
+            }
+        }
 
-            var newManifest = newManifests.get(id);
-            if (newManifest == null) throw new RuntimeException("Missing manifest? " + id);
+        // The old manifests must be resolved first, they share the same file on disk as the new ones.
+        var oldManifests = resolveManifests(modifiedOld);
+        var newManifests = resolveManifests(modifiedNew);
+        resolveManifests(added);
 
-            var oldManifest = oldManifests.get(id);
-            if (oldManifest == null) {
-                changes.add(new ChangedVersion(ChangeReason.NEW, id));
-            } else if (!newManifest.equals(oldManifest)) {
-                changes.add(new ChangedVersion(ChangeReason.CHANGED, id));
+        List<ChangedVersion> changes = new ArrayList<>();
+        for (var version : added) {
+            changes.add(new ChangedVersion(ChangeReason.NEW, version.id(), ChangeImpact.DECOMPILE, List.of(), null));
+        }
+        for (int i = 0; i < newManifests.size(); i++) {
+            var diff = ManifestDiff.compute(oldManifests.get(i), newManifests.get(i));
+            var id = newManifests.get(i).id();
+            if (diff.isEmpty()) {
+                LOGGER.info("Manifest for {} changed, but not in any way we care about.", id);
+                continue;
             }
+            LOGGER.info("Manifest for {} changed: {}, requires {}", id, diff.changes(), diff.impact());
+            changes.add(new ChangedVersion(ChangeReason.CHANGED, id, diff.impact(), diff.changes(), oldManifests.get(i)));
         }
         return changes;
     }
@@ -92,7 +133,7 @@ public class ProcessableVersionSet {
             try {
                 var manifestDownload = InMemoryDownload.readFrom(cacheDir.resolve("version_manifest_v2.json"));
                 if (manifestDownload == null) {
-                    manifestDownload = InMemoryDownload.doDownload(http, VERSION_MANIFEST_URL, manifestDownload);
+                    manifestDownload = http.fetch(VERSION_MANIFEST_URL, null);
                 }
                 listManifest = UnobfuscatedVersions.insert(VersionListManifest.loadFrom(manifestDownload.toString()));
             } catch (IOException ex) {
@@ -124,7 +165,18 @@ public class ProcessableVersionSet {
     }
 
     private void populateManifests() {
-        populateManifests(resolveManifests(listManifest()));
+        var versions = FastStream.of(listManifest().versions())
+                .filter(e -> !IgnoredVersions.IGNORED_VERSION.contains(e.id()))
+                .toList();
+        populateManifests(resolveManifests(versions));
+        try {
+            // We have the complete set of manifests, anything else in the snapshot is stale.
+            var snapshot = this.snapshot.get();
+            snapshot.retainOnly(Set.copyOf(FastStream.of(versions).map(VersionListManifest.Version::sha1).toList()));
+            snapshot.save();
+        } catch (IOException ex) {
+            throw new RuntimeException("Failed to save manifest snapshot.", ex);
+        }
     }
 
     private void populateManifests(List<VersionManifest> manifests) {
@@ -135,33 +187,89 @@ public class ProcessableVersionSet {
                 .toLinkedHashMap(VersionManifest::id, e -> e));
     }
 
-    private List<VersionManifest> resolveManifests(VersionListManifest listManifest) {
-        var downloads = FastStream.of(listManifest.versions())
-                .filter(e -> !IgnoredVersions.IGNORED_VERSION.contains(e.id()))
-                .map(version -> DownloadTask.create("downloadManifest_" + version.id(), ForkJoinPool.commonPool(), http, task -> {
+    private List<VersionManifest> resolveManifests(List<VersionListManifest.Version> versions) {
+        if (versions.isEmpty()) return List.of();
+
+        var snapshot = this.snapshot.get();
+        List<VersionListManifest.Version> missing = new ArrayList<>();
+        try {
+            for (var version : versions) {
+                if (parsedManifests.containsKey(version.sha1())) continue;
+
+                byte[] bytes = snapshot.get(version.sha1());
+                // The snapshot holds the pretty printed manifest, a mirror being recorded needs the original.
+                if (bytes == null || http.recordedFile(version.url()).filter(Files::notExists).isPresent()) {
+                    missing.add(version);
+                } else {
+                    restoreManifest(version, bytes);
+                }
+            }
+        } catch (IOException ex) {
+            throw new RuntimeException("Failed to restore manifests from snapshot.", ex);
+        }
+
+        // Only download manifests which are in neither the snapshot, nor already parsed.
+        var downloads = FastStream.of(missing)
+                .map(version -> DownloadTask.create("downloadManifest_" + version.id(), downloadExecutor, http, task -> {
                     task.url.set(version.url());
                     task.downloadHash.set(Optional.of(version.sha1()));
                     task.output.set(VersionManifest.pathForId(cacheDir, version.id()));
                     task.addMutator(JsonPretty::prettyPrintJsonFile);
                 }))
                 .toList();
-        Task.runTasks(downloads);
+        taskRunner.accept(downloads);
 
-        List<VersionManifest> manifests = new ArrayList<>();
+        List<VersionManifest> manifests;
         try {
-            for (DownloadTask download : downloads) {
-                manifests.add(VersionManifest.loadFrom(download.output.get()));
-            }
-        } catch (IOException ex) {
+            manifests = versions.parallelStream()
+                    .map(this::parseManifest)
+                    .toList();
+            snapshot.save();
+        } catch (IOException | UncheckedIOException ex) {
             throw new RuntimeException("Failed to read manifests.", ex);
         }
         return manifests;
     }
 
+    /**
+     * Write a manifest back to disk from the snapshot, if it's missing, such as on a fresh checkout.
+     */
+    private void restoreManifest(VersionListManifest.Version version, byte[] bytes) throws IOException {
+        Path file = VersionManifest.pathForId(cacheDir, version.id());
+        if (Files.exists(file)) return;
+
+        // Other processes may be restoring the same file, each writes its own temp file and the move is atomic.
+        Path tempFile = Files.createTempFile(IOUtils.makeParents(file).getParent(), file.getFileName().toString(), ".tmp");
+        Files.write(tempFile, bytes);
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private VersionManifest parseManifest(VersionListManifest.Version version) {
+        var existing = parsedManifests.get(version.sha1());
+        if (existing != null) return existing;
+
+        try {
+            var snapshot = this.snapshot.get();
+            byte[] bytes = snapshot.get(version.sha1());
+            if (bytes == null) {
+                bytes = Files.readAllBytes(VersionManifest.pathForId(cacheDir, version.id()));
+                snapshot.put(version.sha1(), bytes);
+            }
+            var manifest = VersionManifest.loadFrom(bytes);
+            parsedManifests.put(version.sha1(), manifest);
+            return manifest;
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to read manifest for " + version.id(), ex);
+        }
+    }
+
     public enum ChangeReason {
         CHANGED,
         NEW,
     }
 
-    public record ChangedVersion(ChangeReason reason, String id) { }
+    /**
+     * @param previous The manifest we had for the version before it changed, if it existed.
+     */
+    public record ChangedVersion(ChangeReason reason, String id, ChangeImpact impact, List<String> changes, @Nullable VersionManifest previous) { }
 }
@@ -5,11 +5,13 @@ import net.covers1624.quack.collection.FastStream;
 import net.covers1624.quack.gson.JsonUtils;
 import net.javasauce.ss.util.matrix.JobMatrix;
 import net.javasauce.ss.util.matrix.MatrixJob;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
-import java.util.List;
+import java.time.Duration;
+import java.util.*;
 
 /**
  * Created by covers1624 on 7/22/25.
@@ -26,19 +28,92 @@ public record RunRequest(
         return JsonUtils.parse(GSON, file, RunRequest.class, StandardCharsets.UTF_8);
     }
 
-    public static JobMatrix splitJobs(RunRequest runRequest, int jobCount) {
-        var jobs = FastStream.of(runRequest.versions())
-                .partition(jobCount)
-                .map(e -> new RunRequest(
-                        runRequest.reason(),
-                        runRequest.decompilerVersion(),
-                        e.toList()
-                ))
-                .map(e -> new MatrixJob("job", e))
-                .toList();
+    /**
+     * Split the given request into a matrix of jobs.
+     * <p>
+     * Versions are assigned to jobs by their predicted cost, longest first, always
+     * into the job with the least predicted work. This keeps the slowest job, which
+     * gates the whole matrix, as short as possible.
+     *
+     * @param runRequest The request to split.
+     * @param matrixSize The number of versions per job, used to pick the job count when no budget is given.
+     * @param timings    The historical timings used to predict version costs.
+     * @param budget     The target duration for each job, if any.
+     * @return The matrix.
+     */
+    public static JobMatrix splitJobs(RunRequest runRequest, int matrixSize, VersionTimings timings, @Nullable Duration budget) {
+        var versions = runRequest.versions();
+        long[] costs = new long[versions.size()];
+        long totalCost = 0;
+        for (int i = 0; i < versions.size(); i++) {
+            costs[i] = timings.predict(versions.get(i).id());
+            totalCost += costs[i];
+        }
+
+        int jobCount;
+        if (budget != null) {
+            jobCount = (int) Math.ceilDiv(totalCost, Math.max(1, budget.toMillis()));
+        } else {
+            jobCount = Math.ceilDiv(versions.size(), matrixSize);
+        }
+        jobCount = Math.max(1, Math.min(jobCount, versions.size()));
+
+        List<JobBucket> buckets = new ArrayList<>(jobCount);
+        PriorityQueue<JobBucket> queue = new PriorityQueue<>(Comparator.comparingLong(JobBucket::cost).thenComparingInt(JobBucket::index));
+        for (int i = 0; i < jobCount; i++) {
+            var bucket = new JobBucket(i);
+            buckets.add(bucket);
+            queue.add(bucket);
+        }
+
+        List<Integer> byCost = new ArrayList<>(versions.size());
+        for (int i = 0; i < versions.size(); i++) {
+            byCost.add(i);
+        }
+        byCost.sort(Comparator.comparingLong((Integer i) -> costs[i]).reversed());
+        for (int i : byCost) {
+            var bucket = queue.poll();
+            bucket.indices.add(i);
+            bucket.cost += costs[i];
+            queue.add(bucket);
+        }
+
+        List<MatrixJob> jobs = new ArrayList<>();
+        for (JobBucket bucket : buckets) {
+            if (bucket.indices.isEmpty()) continue;
+
+            // Keep the original request order within a job.
+            bucket.indices.sort(Comparator.naturalOrder());
+            var jobVersions = FastStream.of(bucket.indices).map(versions::get).toList();
+            var name = "Job " + (jobs.size() + 1) + " (" + jobVersions.size() + " versions, ~" + Duration.ofMillis(bucket.cost).toMinutes() + "m)";
+            jobs.add(new MatrixJob(name, new RunRequest(
+                    runRequest.reason(),
+                    runRequest.decompilerVersion(),
+                    jobVersions
+            )));
+        }
         return new JobMatrix(jobs);
     }
 
+    private static final class JobBucket {
+
+        private final int index;
+        private final List<Integer> indices = new ArrayList<>();
+        private long cost;
+
+        private JobBucket(int index) {
+            this.index = index;
+        }
+
+        private int index() {
+            return index;
+        }
+
+        private long cost() {
+            return cost;
+        }
+    }
+
     public static RunRequest mergeJobs(JobMatrix matrix) {
         var first = matrix.jobs().getFirst().parseRequest();
         return new RunRequest(
@@ -1,7 +1,6 @@
 package net.javasauce.ss.util;
 
 import net.covers1624.quack.maven.MavenNotation;
-import net.covers1624.quack.net.httpapi.HttpEngine;
 import org.w3c.dom.Document;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
@@ -17,12 +16,12 @@ import java.io.StringReader;
  */
 public class ToolUtils {
 
-    public static String findLatest(HttpEngine http, String maven, MavenNotation notation) {
+    public static String findLatest(HttpCache http, String maven, MavenNotation notation) {
         if (!maven.endsWith("/")) maven += "/";
 
-        var download = InMemoryDownload.doDownload(http, maven + notation.toModulePath() + "maven-metadata.xml", null);
-
         try {
+            var download = http.get(maven + notation.toModulePath() + "maven-metadata.xml");
+
             DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
             DocumentBuilder builder = factory.newDocumentBuilder();
 
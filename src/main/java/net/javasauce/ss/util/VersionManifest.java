@@ -12,6 +12,7 @@ import net.covers1624.quack.gson.MavenNotationAdapter;
 import net.covers1624.quack.maven.MavenNotation;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.lang.reflect.Type;
 import java.nio.file.Path;
@@ -51,6 +52,10 @@ public record VersionManifest(
         return JsonUtils.parse(GSON, file, VersionManifest.class);
     }
 
+    public static VersionManifest loadFrom(byte[] bytes) throws IOException {
+        return JsonUtils.parse(GSON, new ByteArrayInputStream(bytes), VersionManifest.class);
+    }
+
     public static Path pathForId(Path versionsDir, String id) {
         return versionsDir.resolve(id).resolve(id + ".json");
     }
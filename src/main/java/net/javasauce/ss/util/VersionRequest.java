@@ -1,9 +1,25 @@
 package net.javasauce.ss.util;
 
+import org.jetbrains.annotations.Nullable;
+
 /**
  * Created by covers1624 on 7/22/25.
+ *
+ * @param classChanges The classes changed in the client jar since it was last processed, if known.
  */
 public record VersionRequest(
         String id,
-        String commitName
-) { }
+        String commitName,
+        ChangeImpact impact,
+        @Nullable JarDiff.Stats classChanges
+) {
+
+    public VersionRequest {
+        // Requests serialized before impacts existed always meant a full decompile.
+        if (impact == null) impact = ChangeImpact.DECOMPILE;
+    }
+
+    public VersionRequest(String id, String commitName) {
+        this(id, commitName, ChangeImpact.DECOMPILE, null);
+    }
+}
@@ -0,0 +1,109 @@
+package net.javasauce.ss.util;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+import net.covers1624.quack.gson.JsonUtils;
+import net.covers1624.quack.io.IOUtils;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Historical per-version stage durations, in milliseconds.
+ * <p>
+ * Used to predict how long a version will take to process, so matrix
+ * jobs can be balanced by cost instead of version count.
+ */
+public class VersionTimings {
+
+    public static final String STAGE_REMAP = "remap";
+    public static final String STAGE_DECOMPILE = "decompile";
+    public static final String STAGE_COMMIT = "commit";
+
+    private static final Gson GSON = new GsonBuilder()
+            .setPrettyPrinting()
+            .create();
+
+    private static final Type STAGES_TYPE = new TypeToken<Map<String, Long>>() { }.getType();
+    private static final Type TIMINGS_TYPE = new TypeToken<Map<String, Map<String, Long>>>() { }.getType();
+
+    private final Map<String, Map<String, Long>> timings;
+
+    private VersionTimings(Map<String, Map<String, Long>> timings) {
+        this.timings = timings;
+    }
+
+    public static VersionTimings load(Path file) throws IOException {
+        Map<String, Map<String, Long>> timings = null;
+        if (Files.exists(file)) {
+            timings = JsonUtils.parse(GSON, file, TIMINGS_TYPE, StandardCharsets.UTF_8);
+        }
+        return new VersionTimings(timings != null ? new TreeMap<>(timings) : new TreeMap<>());
+    }
+
+    public void save(Path file) throws IOException {
+        JsonUtils.write(GSON, IOUtils.makeParents(file), timings, TIMINGS_TYPE, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Record the stage durations for a version. Stages not provided keep their previous durations.
+     *
+     * @param id     The version.
+     * @param stages The stage durations.
+     */
+    public void record(String id, Map<String, Long> stages) {
+        timings.computeIfAbsent(id, e -> new TreeMap<>()).putAll(stages);
+    }
+
+    public Map<String, Long> get(String id) {
+        return timings.getOrDefault(id, Map.of());
+    }
+
+    /**
+     * Predict the cost of processing the given version.
+     * <p>
+     * Versions we have never seen are assumed to cost the median of all known versions.
+     *
+     * @param id The version.
+     * @return The predicted cost in milliseconds. Will always be at least 1.
+     */
+    public long predict(String id) {
+        var stages = timings.get(id);
+        if (stages != null && !stages.isEmpty()) {
+            return Math.max(1, sum(stages));
+        }
+        return median();
+    }
+
+    private long median() {
+        if (timings.isEmpty()) return 1;
+
+        long[] costs = timings.values().stream()
+                .mapToLong(VersionTimings::sum)
+                .sorted()
+                .toArray();
+        return Math.max(1, costs[costs.length / 2]);
+    }
+
+    private static long sum(Map<String, Long> stages) {
+        long total = 0;
+        for (long value : stages.values()) {
+            total += value;
+        }
+        return total;
+    }
+
+    public static String toJson(Map<String, Long> stages) {
+        return GSON.toJson(stages, STAGES_TYPE);
+    }
+
+    public static Map<String, Long> fromJson(String json) {
+        Map<String, Long> stages = GSON.fromJson(json, STAGES_TYPE);
+        return stages != null ? stages : Map.of();
+    }
+}
@@ -0,0 +1,231 @@
+package net.javasauce.ss.util.matrix;
+
+import com.google.gson.Gson;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import net.javasauce.ss.util.RunRequest;
+import net.javasauce.ss.util.VersionRequest;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * Serves the versions of a {@link RunRequest} to {@link WorkerClient}s one at a time,
+ * as an alternative to splitting the work up-front with a {@link JobMatrix}.
+ * <p>
+ * Each handed out version is leased to a worker, the worker must heartbeat the lease
+ * whilst it works. Leases which are not renewed within the timeout are assumed to belong
+ * to a dead worker, and are put back into the queue for someone else.
+ * <p>
+ * Protocol, all requests are {@code POST}:
+ * <pre>
+ * /lease?worker=name   200 with a {@link Lease}, 204 if nothing is available right now, 410 if all work is finished.
+ * /heartbeat?lease=id  200 if the lease is still held, 410 if it expired.
+ * /complete?lease=id   200 if the completion was accepted, 410 if the lease expired.
+ * /fail?lease=id       200, the version is re-queued if it has attempts remaining.
+ * </pre>
+ */
+public class WorkCoordinator implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(WorkCoordinator.class);
+
+    private static final Gson GSON = new Gson();
+
+    private final RunRequest runRequest;
+    private final Duration leaseTimeout;
+    private final int maxAttempts;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final HttpServer server;
+
+    private final Deque<VersionRequest> pending;
+    private final Map<String, ActiveLease> leases = new HashMap<>();
+    private final Map<String, Integer> attempts = new HashMap<>();
+    private final Set<String> completed = new HashSet<>();
+    private final Set<String> failed = new HashSet<>();
+    private int nextLease;
+
+    public WorkCoordinator(RunRequest runRequest, InetSocketAddress address, Duration leaseTimeout, int maxAttempts) throws IOException {
+        this.runRequest = runRequest;
+        this.leaseTimeout = leaseTimeout;
+        this.maxAttempts = maxAttempts;
+        pending = new ArrayDeque<>(runRequest.versions());
+
+        server = HttpServer.create(address, 0);
+        server.setExecutor(executor);
+        server.createContext("/lease", ex -> handle(ex, () -> lease(requireParam(ex, "worker"))));
+        server.createContext("/heartbeat", ex -> handle(ex, () -> heartbeat(requireParam(ex, "lease"))));
+        server.createContext("/complete", ex -> handle(ex, () -> complete(requireParam(ex, "lease"))));
+        server.createContext("/fail", ex -> handle(ex, () -> fail(requireParam(ex, "lease"))));
+    }
+
+    public void start() {
+        server.start();
+        LOGGER.info("Coordinator serving {} versions on {}", runRequest.versions().size(), getUri());
+    }
+
+    public URI getUri() {
+        var address = server.getAddress();
+        return URI.create("http://" + address.getHostString() + ":" + address.getPort() + "/");
+    }
+
+    /**
+     * Wait for all versions to either complete, or run out of attempts.
+     *
+     * @return A {@link RunRequest} containing only the completed versions, in their original order.
+     */
+    public synchronized RunRequest awaitCompletion() throws InterruptedException {
+        while (!isFinished()) {
+            expireLeases();
+            wait(1000);
+        }
+        if (!failed.isEmpty()) {
+            LOGGER.error("{} versions failed on all attempts: {}", failed.size(), failed);
+        }
+        return new RunRequest(
+                runRequest.reason(),
+                runRequest.decompilerVersion(),
+                runRequest.versions().stream()
+                        .filter(e -> completed.contains(e.id()))
+                        .toList()
+        );
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private synchronized Response lease(String worker) {
+        expireLeases();
+        if (isFinished()) return new Response(410, null);
+
+        var version = pending.poll();
+        if (version == null) return new Response(204, null);
+
+        var lease = new Lease(
+                String.valueOf(nextLease++),
+                new RunRequest(runRequest.reason(), runRequest.decompilerVersion(), List.of(version)),
+                leaseTimeout.toMillis()
+        );
+        leases.put(lease.id(), new ActiveLease(worker, version, System.nanoTime()));
+        attempts.merge(version.id(), 1, Integer::sum);
+        LOGGER.info("Leased {} to {} as {}.", version.id(), worker, lease.id());
+        return new Response(200, GSON.toJson(lease));
+    }
+
+    private synchronized Response heartbeat(String id) {
+        expireLeases();
+        var lease = leases.get(id);
+        if (lease == null) return new Response(410, null);
+
+        leases.put(id, new ActiveLease(lease.worker(), lease.version(), System.nanoTime()));
+        return new Response(200, null);
+    }
+
+    private synchronized Response complete(String id) {
+        var lease = leases.remove(id);
+        if (lease == null) return new Response(410, null);
+
+        LOGGER.info("{} completed {}.", lease.worker(), lease.version().id());
+        completed.add(lease.version().id());
+        notifyAll();
+        return new Response(200, null);
+    }
+
+    private synchronized Response fail(String id) {
+        var lease = leases.remove(id);
+        if (lease == null) return new Response(410, null);
+
+        LOGGER.warn("{} failed {}.", lease.worker(), lease.version().id());
+        requeue(lease.version());
+        notifyAll();
+        return new Response(200, null);
+    }
+
+    private void expireLeases() {
+        long now = System.nanoTime();
+        var itr = leases.values().iterator();
+        while (itr.hasNext()) {
+            var lease = itr.next();
+            if (now - lease.renewed() < leaseTimeout.toNanos()) continue;
+
+            LOGGER.warn("Lease for {} held by {} expired.", lease.version().id(), lease.worker());
+            itr.remove();
+            requeue(lease.version());
+        }
+    }
+
+    private void requeue(VersionRequest version) {
+        if (attempts.getOrDefault(version.id(), 0) >= maxAttempts) {
+            failed.add(version.id());
+            return;
+        }
+        // Put it at the front, it was taken in order originally.
+        pending.addFirst(version);
+    }
+
+    private boolean isFinished() {
+        return pending.isEmpty() && leases.isEmpty();
+    }
+
+    private static String requireParam(HttpExchange ex, String name) {
+        var query = ex.getRequestURI().getQuery();
+        if (query != null) {
+            for (String pair : query.split("&")) {
+                int idx = pair.indexOf('=');
+                if (idx != -1 && pair.substring(0, idx).equals(name)) {
+                    return pair.substring(idx + 1);
+                }
+            }
+        }
+        throw new IllegalArgumentException("Missing query parameter '" + name + "'.");
+    }
+
+    private static void handle(HttpExchange ex, Supplier<Response> func) throws IOException {
+        try (ex) {
+            Response response;
+            try {
+                if (!ex.getRequestMethod().equals("POST")) {
+                    response = new Response(405, null);
+                } else {
+                    response = func.get();
+                }
+            } catch (IllegalArgumentException e) {
+                response = new Response(400, e.getMessage());
+            }
+
+            if (response.body() == null) {
+                ex.sendResponseHeaders(response.status(), -1);
+                return;
+            }
+            byte[] bytes = response.body().getBytes(StandardCharsets.UTF_8);
+            ex.getResponseHeaders().add("Content-Type", "application/json");
+            ex.sendResponseHeaders(response.status(), bytes.length);
+            ex.getResponseBody().write(bytes);
+        }
+    }
+
+    /**
+     * A version handed out to a worker.
+     *
+     * @param id            The lease id, used when reporting back to the coordinator.
+     * @param request       A {@link RunRequest} for the single leased version.
+     * @param timeoutMillis How long the lease may go without a heartbeat before it expires.
+     */
+    public record Lease(String id, RunRequest request, long timeoutMillis) { }
+
+    private record ActiveLease(String worker, VersionRequest version, long renewed) { }
+
+    private record Response(int status, @Nullable String body) { }
+}
@@ -0,0 +1,110 @@
+package net.javasauce.ss.util.matrix;
+
+import com.google.gson.Gson;
+import net.covers1624.quack.net.httpapi.HttpEngine;
+import net.covers1624.quack.net.httpapi.WebBody;
+import net.javasauce.ss.util.matrix.WorkCoordinator.Lease;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+/**
+ * Talks to a {@link WorkCoordinator} on behalf of a worker process.
+ */
+public class WorkerClient {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(WorkerClient.class);
+
+    private static final Gson GSON = new Gson();
+    private static final Duration POLL_INTERVAL = Duration.ofSeconds(5);
+
+    private final HttpEngine http;
+    private final String baseUrl;
+    private final String worker;
+
+    public WorkerClient(HttpEngine http, String baseUrl, String worker) {
+        this.http = http;
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl : baseUrl + "/";
+        this.worker = worker;
+    }
+
+    /**
+     * Lease the next version to process.
+     * <p>
+     * If there is no work available right now, but other workers still hold
+     * leases which may expire, this will block polling the coordinator.
+     *
+     * @return The lease, or {@code null} if all work is finished.
+     */
+    public @Nullable Lease lease() throws IOException, InterruptedException {
+        while (true) {
+            var reply = post("lease?worker=" + URLEncoder.encode(worker, StandardCharsets.UTF_8));
+            switch (reply.status()) {
+                case 200 -> {
+                    if (reply.body() == null) throw new IOException("Coordinator returned an empty lease.");
+                    return GSON.fromJson(reply.body(), Lease.class);
+                }
+                case 410 -> {
+                    return null;
+                }
+                case 204 -> { }
+                default -> throw new IOException("Unexpected response from coordinator: " + reply.status());
+            }
+            Thread.sleep(POLL_INTERVAL);
+        }
+    }
+
+    /**
+     * Renew the given lease.
+     *
+     * @return {@code false} if the lease has expired and been handed to someone else.
+     */
+    public boolean heartbeat(Lease lease) throws IOException {
+        return report("heartbeat", lease);
+    }
+
+    /**
+     * Report the given lease as completed.
+     *
+     * @return {@code false} if the lease had already expired, and the work will be redone.
+     */
+    public boolean complete(Lease lease) throws IOException {
+        return report("complete", lease);
+    }
+
+    /**
+     * Report the given lease as failed, so it may be retried.
+     */
+    public void fail(Lease lease) throws IOException {
+        report("fail", lease);
+    }
+
+    private boolean report(String action, Lease lease) throws IOException {
+        var reply = post(action + "?lease=" + URLEncoder.encode(lease.id(), StandardCharsets.UTF_8));
+        return switch (reply.status()) {
+            case 200 -> true;
+            case 410 -> {
+                LOGGER.warn("Lease {} is no longer held, {} rejected.", lease.id(), action);
+                yield false;
+            }
+            default -> throw new IOException("Unexpected response from coordinator: " + reply.status());
+        };
+    }
+
+    private Reply post(String path) throws IOException {
+        var request = http.newRequest()
+                .method("POST", WebBody.string("", "text/plain"))
+                .url(baseUrl + path);
+        try (var response = request.execute()) {
+            var body = response.body();
+            return new Reply(response.statusCode(), body != null ? body.asString() : null);
+        }
+    }
+
+    private record Reply(int status, @Nullable String body) { }
+}
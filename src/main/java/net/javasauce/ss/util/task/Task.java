@@ -3,18 +3,24 @@ package net.javasauce.ss.util.task;
 import net.covers1624.quack.collection.FastStream;
 import net.covers1624.quack.util.SneakyUtils;
 import net.javasauce.ss.util.MemoizedSupplier;
+import net.javasauce.ss.util.ProcessLock;
 import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 import java.util.concurrent.ForkJoinPool;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 
+import static java.util.Objects.requireNonNull;
+
 /**
  * A task is some operation that executes on a given executor. Tasks can declare
  * inputs and outputs. Outputs of one task may be used as inputs to another task.
@@ -28,15 +34,35 @@ import java.util.function.Supplier;
  * not be re-run. Note: It's important to ensure your outputs are included in the cache,
  * otherwise your task may not re-run when it's missing.
  * <p>
+ * Where all of a cacheable task's cache values are known before any of its dependencies execute,
+ * such as static values, or file paths of outputs, the task is checked for being up-to-date before
+ * its dependencies are resolved, along with every task upstream of it. If they all are, its dependencies
+ * are never scheduled on its behalf, pruning the whole upstream graph. Tasks with explicit or inner tasks
+ * are not checked early, as their ordering may matter to the files they cache.
+ * <p>
  * Tasks may declare 'inner' tasks via {@link #declareCompositeTask}, these tasks copy any
  * explicit dependencies their outer has/will have, and are marked as explicit dependencies of their outer.
  * <p>
+ * Tasks which only discover the work they need whilst executing may spawn child tasks and wait for them
+ * via {@link #awaitTasks}. Such tasks should execute on {@link #VIRTUAL_EXECUTOR}, so waiting parks a virtual
+ * thread instead of holding a pool thread the children may need.
+ * <p>
  * Created by covers1624 on 6/24/25.
  */
 public abstract class Task {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(Task.class);
 
+    // Set whilst checking a task's cache before its dependencies are resolved, IO values must only be peeked.
+    private static final ThreadLocal<Boolean> PEEKING = ThreadLocal.withInitial(() -> false);
+
+    /**
+     * Executes every task on its own virtual thread.
+     * <p>
+     * Use this for tasks which spawn and wait on child tasks, see {@link #awaitTasks}.
+     */
+    public static final Executor VIRTUAL_EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+
     private final List<TaskInput<?>> inputs = new ArrayList<>();
     private final List<TaskOutput<?>> outputs = new ArrayList<>();
 
@@ -44,7 +70,10 @@ public abstract class Task {
     private final Executor executor;
 
     private @Nullable CompletableFuture<Task> taskFuture;
+    private @Nullable Supplier<TaskCacheBuilder> cacheFactory;
     private @Nullable Supplier<TaskCacheBuilder> cache;
+    private @Nullable TaskIO<Path> lockNextTo;
+    private @Nullable Duration duration;
 
     private final List<Task> dependsOn = new ArrayList<>();
     private final List<Task> innerTasks = new ArrayList<>();
@@ -64,6 +93,8 @@ public abstract class Task {
 
     /**
      * Schedule the given tasks and wait for them to complete.
+     * <p>
+     * Tasks wanting to run other tasks whilst executing should use {@link #awaitTasks} instead.
      *
      * @param tasks The tasks to run.
      */
@@ -73,41 +104,117 @@ public abstract class Task {
 
     /**
      * Schedule the given tasks and wait for them to complete.
+     * <p>
+     * Tasks wanting to run other tasks whilst executing should use {@link #awaitTasks} instead.
      *
      * @param tasks The tasks to run.
      */
     public static void runTasks(Iterable<? extends Task> tasks) {
+        allOf(tasks).join();
+    }
+
+    private static CompletableFuture<Void> allOf(Iterable<? extends Task> tasks) {
         var futures = FastStream.of(tasks)
                 .map(Task::getFuture)
                 .toArray(CompletableFuture[]::new);
 
-        CompletableFuture.allOf(futures).join();
+        return CompletableFuture.allOf(futures);
+    }
+
+    /**
+     * Spawn the given tasks as children of this task, and wait for them to complete.
+     * <p>
+     * Must only be called whilst this task is executing. Children are scheduled on their own
+     * executors like any other task, with their dependencies resolved as usual.
+     * <p>
+     * On a virtual thread, see {@link #VIRTUAL_EXECUTOR}, waiting only parks this task. Waiting from a
+     * pool thread holds it for the duration, which may starve the pool the children need.
+     *
+     * @param tasks The tasks to run.
+     */
+    protected final void awaitTasks(Task... tasks) {
+        awaitTasks(Arrays.asList(tasks));
+    }
+
+    /**
+     * Spawn the given tasks as children of this task, and wait for them to complete.
+     * <p>
+     * See {@link #awaitTasks(Task...)}.
+     *
+     * @param tasks The tasks to run.
+     */
+    protected final void awaitTasks(Iterable<? extends Task> tasks) {
+        if (!Thread.currentThread().isVirtual()) {
+            LOGGER.warn("Task {} is waiting on child tasks from a platform thread, it should execute on Task.VIRTUAL_EXECUTOR.", name);
+        }
+        allOf(tasks).join();
     }
 
     /**
      * Enable caching for your task.
      *
-     * @param cacheNextTo The output to store the cache file next to.
+     * @param cacheNextTo The input or output to store the cache file next to.
      * @param cons        The function to configure the cache with your cache inputs/outputs.
      */
-    protected final void withCaching(TaskOutput<Path> cacheNextTo, Consumer<TaskCacheBuilder> cons) {
+    protected final void withCaching(TaskIO<Path> cacheNextTo, Consumer<TaskCacheBuilder> cons) {
         withCaching(cacheNextTo, "", cons);
     }
 
     /**
      * Enable caching for your task.
      *
-     * @param cacheNextTo The output to store the cache file next to.
+     * @param cacheNextTo The input or output to store the cache file next to.
      * @param cacheSuffix A suffix on the cache name, this can be used to distinguish between .sha1 files. // TODO perhaps we change the suffix to always be '_task.sha1'
      * @param configure   The function to configure the cache with your cache inputs/outputs.
      */
-    protected final void withCaching(TaskOutput<Path> cacheNextTo, String cacheSuffix, Consumer<TaskCacheBuilder> configure) {
-        cache = new MemoizedSupplier<>(() -> {
+    protected final void withCaching(TaskIO<Path> cacheNextTo, String cacheSuffix, Consumer<TaskCacheBuilder> configure) {
+        cacheFactory = () -> {
             var outputPath = cacheNextTo.get();
-            var cache = new TaskCacheBuilder(outputPath.resolveSibling(outputPath.getFileName() + cacheSuffix + ".sha1"));
+            var cache = new TaskCacheBuilder(cacheFile(outputPath, cacheSuffix));
             configure.accept(cache);
             return cache;
-        });
+        };
+        cache = new MemoizedSupplier<>(cacheFactory);
+    }
+
+    /**
+     * Get the cache file {@link #withCaching(TaskIO, String, Consumer)} stores next to the given path.
+     * <p>
+     * The cache file is removed before a task executes, and only written once it finishes
+     * successfully, its existence can be used to tell if an output is complete.
+     *
+     * @param cacheNextTo The path the cache file is stored next to.
+     * @param cacheSuffix The suffix on the cache name.
+     * @return The cache file.
+     */
+    protected static Path cacheFile(Path cacheNextTo, String cacheSuffix) {
+        return cacheNextTo.resolveSibling(cacheNextTo.getFileName() + cacheSuffix + ".sha1");
+    }
+
+    /**
+     * Guard the execution of your task with a lock file, so multiple processes
+     * sharing the same directories don't execute it at the same time.
+     * <p>
+     * The up-to-date check is performed whilst the lock is held, whoever gets
+     * the lock second will usually find the task up-to-date.
+     *
+     * @param lockNextTo The input or output to store the lock file next to.
+     */
+    protected final void withFileLock(TaskIO<Path> lockNextTo) {
+        this.lockNextTo = lockNextTo;
+    }
+
+    /**
+     * Get the lock file {@link #withFileLock(TaskIO)} holds for the given path.
+     * <p>
+     * Other code touching the same files, outside the task, can hold this lock to
+     * exclude the task whilst doing so.
+     *
+     * @param lockNextTo The path the lock file is stored next to.
+     * @return The lock file.
+     */
+    protected static Path lockFile(Path lockNextTo) {
+        return lockNextTo.resolveSibling(lockNextTo.getFileName() + ".lock");
     }
 
     /**
@@ -234,27 +341,80 @@ public abstract class Task {
      */
     public synchronized final CompletableFuture<Task> getFuture() {
         if (taskFuture == null) {
-            var inputFuture = CompletableFuture.allOf(
-                    FastStream.concat(
-                                    FastStream.of(dependsOn).map(Task::getFuture),
-                                    FastStream.of(innerTasks).map(Task::getFuture),
-                                    FastStream.of(outputs).map(TaskOutput::deriveFuture).filter(Objects::nonNull),
-                                    FastStream.of(inputs).map(TaskIO::getFuture)
-                            )
-                            .toArray(CompletableFuture[]::new)
-            );
-            taskFuture = inputFuture.thenApplyAsync(v -> {
-                try {
-                    doExecute();
-                } catch (Throwable ex) {
-                    SneakyUtils.throwUnchecked(ex);
-                }
-                return this;
-            }, executor);
+            if (cacheFactory != null && dependsOn.isEmpty() && innerTasks.isEmpty()) {
+                taskFuture = CompletableFuture.supplyAsync(this::tryShortCircuit, executor)
+                        .thenCompose(skipped -> skipped ? CompletableFuture.completedFuture(this) : scheduleExecution());
+            } else {
+                taskFuture = scheduleExecution();
+            }
         }
         return taskFuture;
     }
 
+    private CompletableFuture<Task> scheduleExecution() {
+        var inputFuture = CompletableFuture.allOf(
+                FastStream.concat(
+                                FastStream.of(dependsOn).map(Task::getFuture),
+                                FastStream.of(innerTasks).map(Task::getFuture),
+                                FastStream.of(outputs).map(TaskOutput::deriveFuture).filter(Objects::nonNull),
+                                FastStream.of(inputs).map(TaskIO::getFuture)
+                        )
+                        .toArray(CompletableFuture[]::new)
+        );
+        return inputFuture.thenApplyAsync(v -> {
+            try {
+                doExecute();
+            } catch (Throwable ex) {
+                SneakyUtils.throwUnchecked(ex);
+            }
+            return this;
+        }, executor);
+    }
+
+    /**
+     * Check if this task is up-to-date using only the values of its IO which are
+     * known without executing any other tasks.
+     * <p>
+     * Every task upstream of this one must also be up-to-date. Otherwise, files it would
+     * replace, such as a download whose expected hash changed, would be trusted as-is.
+     *
+     * @return {@code true} if the task is up-to-date, and has been skipped.
+     */
+    private boolean tryShortCircuit() {
+        PEEKING.set(true);
+        try {
+            if (!isUpToDatePeeked(new HashSet<>())) return false;
+
+            for (TaskOutput<?> output : outputs) {
+                output.resolvePeeked();
+            }
+            restoreComputedOutputs();
+            checkComputedOutputs();
+        } catch (NotPeekableException ex) {
+            return false;
+        } catch (Throwable ex) {
+            LOGGER.debug("Unable to check if task {} is up-to-date early.", name, ex);
+            return false;
+        } finally {
+            PEEKING.set(false);
+        }
+        LOGGER.info("Skipping task {} and its dependencies, is up-to-date.", name);
+        return true;
+    }
+
+    private boolean isUpToDatePeeked(Set<Task> checked) throws IOException {
+        if (!checked.add(this)) return true;
+        if (cacheFactory == null || !dependsOn.isEmpty() || !innerTasks.isEmpty()) return false;
+        if (!cacheFactory.get().isUpToDate()) return false;
+
+        for (TaskIO<?> io : FastStream.<TaskIO<?>>concat(inputs, outputs)) {
+            for (Task upstream : io.upstream()) {
+                if (!upstream.isUpToDatePeeked(checked)) return false;
+            }
+        }
+        return true;
+    }
+
     private void doExecute() throws Throwable {
         LOGGER.info("Executing task {}", name);
         for (TaskInput<?> input : inputs) {
@@ -267,22 +427,44 @@ public abstract class Task {
                 throw new IllegalStateException("Output '" + output.getName() + "' for task '" + getName() + "' must have a value set before its executed. Did you want a computed output instead?.");
             }
         }
+        if (lockNextTo != null) {
+            try (var lock = ProcessLock.acquire(lockFile(lockNextTo.get()))) {
+                executeIfRequired();
+            }
+        } else {
+            executeIfRequired();
+        }
+    }
+
+    private void executeIfRequired() throws Throwable {
         TaskCacheBuilder cache = this.cache != null ? this.cache.get() : null;
         if (cache != null && cache.isUpToDate()) {
             LOGGER.info("Skipping task {}, is up-to-date.", name);
+            restoreComputedOutputs();
+            checkComputedOutputs();
             return;
         }
+        if (cache != null) {
+            // If we fail part way through, our outputs must not be considered up-to-date next time.
+            cache.invalidate();
+        }
+        long start = System.nanoTime();
         execute();
+        duration = Duration.ofNanos(System.nanoTime() - start);
+        checkComputedOutputs();
+
+        if (cache != null) {
+            cache.writeCache();
+        }
+        LOGGER.info("Task {} finished in {}ms.", name, duration.toMillis());
+    }
+
+    private void checkComputedOutputs() {
         for (TaskOutput<?> output : outputs) {
             if (output.isComputed() && !output.isValueSet()) {
                 throw new IllegalStateException("Output '" + output.getName() + "' for task '" + getName() + "' did not produce a required output.");
             }
         }
-
-        if (cache != null) {
-            cache.writeCache();
-        }
-        LOGGER.info("Task {} finished.", name);
     }
 
     /**
@@ -290,11 +472,80 @@ public abstract class Task {
      */
     protected abstract void execute() throws Throwable;
 
+    /**
+     * Called instead of {@link #execute()} when your task is skipped as up-to-date.
+     * <p>
+     * Cacheable tasks with computed outputs must set them here, usually by reading
+     * them back from their other outputs.
+     */
+    protected void restoreComputedOutputs() throws Throwable {
+    }
+
     public final String getName() {
         return name;
     }
 
+    /**
+     * The identity of this task. Tasks with equal identities must do exactly the same work,
+     * they may be de-duplicated via {@link TaskRegistry}.
+     *
+     * @return The identity, or {@code null} if this task should never be de-duplicated.
+     */
+    protected @Nullable Object getIdentity() {
+        return null;
+    }
+
+    /**
+     * Build an identity for this task, see {@link #getIdentity()}.
+     * <p>
+     * The task's type is always part of the identity.
+     *
+     * @param parts The parts of the identity. Any {@link TaskIO} is replaced by its value,
+     *              which must be known without executing any tasks.
+     * @return The identity, or {@code null} if the value of any IO is not yet known.
+     */
+    protected final @Nullable Object identityOf(Object... parts) {
+        List<Object> identity = new ArrayList<>(parts.length + 1);
+        identity.add(getClass());
+        for (Object part : parts) {
+            if (part instanceof TaskIO<?> io) {
+                var value = io.peek();
+                if (value.isEmpty()) return null;
+                identity.add(value.get());
+            } else {
+                identity.add(part);
+            }
+        }
+        return identity;
+    }
+
+    /**
+     * @return How long this task spent executing, or {@code null} if it has not
+     * executed, or was skipped as up-to-date.
+     */
+    public final @Nullable Duration getDuration() {
+        return duration;
+    }
+
     final boolean isFutureResolved() {
         return taskFuture != null;
     }
+
+    final boolean hasExplicitDependencies() {
+        return !dependsOn.isEmpty();
+    }
+
+    static boolean isPeeking() {
+        return PEEKING.get();
+    }
+
+    /**
+     * Thrown when an IO value is requested whilst peeking, but can't be known without executing a task.
+     */
+    static final class NotPeekableException extends RuntimeException {
+
+        NotPeekableException() {
+            super(null, null, false, false);
+        }
+    }
 }
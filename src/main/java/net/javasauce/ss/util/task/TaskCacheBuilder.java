@@ -11,6 +11,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.function.Function;
+import java.util.stream.Stream;
 
 /**
  * Created by covers1624 on 6/24/25.
@@ -44,12 +45,38 @@ public class TaskCacheBuilder {
         entries.add(e -> Hashing.addUTFBytes(e, num.toString()));
     }
 
+    /**
+     * Add every file within the given directory, by its relative path and contents.
+     * <p>
+     * The directory is listed each time the cache is computed, so files
+     * created by the task itself are included once it has executed.
+     *
+     * @param dir The directory.
+     */
+    public void addTree(Path dir) {
+        entries.add(e -> {
+            if (Files.notExists(dir)) return;
+
+            List<Path> files;
+            try (Stream<Path> stream = Files.walk(dir)) {
+                files = stream.filter(Files::isRegularFile)
+                        .sorted()
+                        .toList();
+            }
+            for (Path file : files) {
+                Hashing.addUTFBytes(e, dir.relativize(file).toString());
+                Hashing.addFileBytes(e, file);
+            }
+        });
+    }
+
     public void add(Object obj) {
         switch (obj) {
             case Path path -> add(path);
             case CharSequence str -> add(str);
             case Number num -> add(num);
             case Optional<?> opt -> opt.ifPresent(this::add);
+            case Iterable<?> iter -> iter.forEach(this::add);
             case TaskIO<?> io -> add(io);
             default -> throw new IllegalStateException("Unable to cache value: " + obj.getClass());
         }
@@ -70,6 +97,10 @@ public class TaskCacheBuilder {
         return existing.equals(hash());
     }
 
+    public void invalidate() throws IOException {
+        Files.deleteIfExists(cacheFile);
+    }
+
     public void writeCache() throws IOException {
         Files.writeString(cacheFile, hash());
     }
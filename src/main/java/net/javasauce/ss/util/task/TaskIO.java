@@ -1,5 +1,7 @@
 package net.javasauce.ss.util.task;
 
+import java.util.List;
+import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.function.Supplier;
 
@@ -36,4 +38,21 @@ public abstract sealed class TaskIO<T> implements Supplier<T> permits TaskInput,
     }
 
     abstract boolean isValueSet();
+
+    /**
+     * Get the value of this IO, if it is already known without executing any tasks.
+     *
+     * @return The value, or empty if it can only be known by executing a task.
+     */
+    abstract Optional<T> peek();
+
+    /**
+     * Get the tasks which produce the value returned by {@link #peek()}.
+     * <p>
+     * A peeked value can only be trusted if these tasks are up-to-date, a file path
+     * is known before the task producing it executes, its contents are not.
+     *
+     * @return The tasks.
+     */
+    abstract List<Task> upstream();
 }
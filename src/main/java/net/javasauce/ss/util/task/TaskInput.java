@@ -4,7 +4,9 @@ import net.covers1624.quack.collection.FastStream;
 import net.javasauce.ss.util.MemoizedSupplier;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.function.BiFunction;
 import java.util.function.Function;
@@ -22,6 +24,8 @@ public sealed class TaskInput<T> extends TaskIO<T> permits TaskInput.Collection
 
     // We use a supplier to avoid resolving a tasks output too early.
     private @Nullable Supplier<CompletableFuture<T>> futureSupplier;
+    private Supplier<Optional<T>> peekSupplier = Optional::empty;
+    private Supplier<List<Task>> upstreamSupplier = List::of;
 
     TaskInput(Task task, String name) {
         super(task, name);
@@ -43,12 +47,15 @@ public sealed class TaskInput<T> extends TaskIO<T> permits TaskInput.Collection
     /**
      * Get the value stored in this Input.
      * <p>
-     * Will block until the inputs future is completed.
+     * Will block until the inputs future is completed. Whilst the task is executing,
+     * its inputs are always complete.
      *
      * @return The vlaue.
      */
     @Override
     public T get() {
+        if (Task.isPeeking()) return peek().orElseThrow(Task.NotPeekableException::new);
+
         return getFuture().join();
     }
 
@@ -60,7 +67,7 @@ public sealed class TaskInput<T> extends TaskIO<T> permits TaskInput.Collection
      * @param value The value.
      */
     public void set(T value) {
-        set(() -> CompletableFuture.completedFuture(value));
+        set(() -> CompletableFuture.completedFuture(value), () -> Optional.ofNullable(value), List::of);
     }
 
     /**
@@ -74,7 +81,7 @@ public sealed class TaskInput<T> extends TaskIO<T> permits TaskInput.Collection
      * @param io The IO to set this input from.
      */
     public void set(TaskIO<T> io) {
-        set(io::getFuture);
+        set(io::getFuture, io::peek, io::upstream);
     }
 
     /**
@@ -88,7 +95,7 @@ public sealed class TaskInput<T> extends TaskIO<T> permits TaskInput.Collection
      * @param func The function to apply
      */
     public <A> void deriveFrom(TaskIO<A> aIo, Function<? super A, ? extends T> func) {
-        set(() -> aIo.getFuture().thenApply(func));
+        set(() -> aIo.getFuture().thenApply(func), () -> aIo.peek().map(func), aIo::upstream);
     }
 
     /**
@@ -103,7 +110,11 @@ public sealed class TaskInput<T> extends TaskIO<T> permits TaskInput.Collection
      * @param func The function to apply
      */
     public <A, B> void deriveFrom(TaskIO<A> aIo, TaskIO<B> bIo, BiFunction<? super A, ? super B, ? extends T> func) {
-        set(() -> aIo.getFuture().thenCombineAsync(bIo.getFuture(), func));
+        set(
+                () -> aIo.getFuture().thenCombineAsync(bIo.getFuture(), func),
+                () -> aIo.peek().flatMap(a -> bIo.peek().map(b -> func.apply(a, b))),
+                () -> FastStream.concat(aIo.upstream(), bIo.upstream()).toList()
+        );
     }
 
     /**
@@ -117,10 +128,24 @@ public sealed class TaskInput<T> extends TaskIO<T> permits TaskInput.Collection
      * @param futureSupplier The supplier to provide the future for this IO's value.
      */
     protected final void set(Supplier<CompletableFuture<T>> futureSupplier) {
+        set(futureSupplier, Optional::empty, List::of);
+    }
+
+    /**
+     * Set the future supplier for this Input, along with a function to peek its value
+     * without executing any tasks, if possible.
+     *
+     * @param futureSupplier The supplier to provide the future for this IO's value.
+     * @param peekSupplier     The supplier to peek this IO's value.
+     * @param upstreamSupplier The supplier for the tasks producing the peeked value, see {@link #upstream()}.
+     */
+    protected final void set(Supplier<CompletableFuture<T>> futureSupplier, Supplier<Optional<T>> peekSupplier, Supplier<List<Task>> upstreamSupplier) {
         if (task.isFutureResolved()) {
             throw new IllegalStateException("Unable to set Input value after task execution has been scheduled.");
         }
         this.futureSupplier = new MemoizedSupplier<>(futureSupplier);
+        this.peekSupplier = peekSupplier;
+        this.upstreamSupplier = upstreamSupplier;
     }
 
     @Override
@@ -128,6 +153,16 @@ public sealed class TaskInput<T> extends TaskIO<T> permits TaskInput.Collection
         return futureSupplier != null;
     }
 
+    @Override
+    Optional<T> peek() {
+        return peekSupplier.get();
+    }
+
+    @Override
+    List<Task> upstream() {
+        return upstreamSupplier.get();
+    }
+
     /**
      * An input which can represent multiple things, and multiple dependencies.
      */
@@ -154,7 +189,17 @@ public sealed class TaskInput<T> extends TaskIO<T> permits TaskInput.Collection
                         .thenApply(e -> FastStream.of(futures)
                                 .map(CompletableFuture::join)
                                 .toList());
-            });
+            }, () -> {
+                List<E> values = new ArrayList<>(outputs.size());
+                for (TaskOutput<E> output : outputs) {
+                    var value = output.peek();
+                    if (value.isEmpty()) return Optional.empty();
+                    values.add(value.get());
+                }
+                return Optional.of(values);
+            }, () -> FastStream.of(outputs)
+                    .flatMap(TaskIO::upstream)
+                    .toList());
         }
     }
 }
@@ -1,12 +1,16 @@
 package net.javasauce.ss.util.task;
 
+import net.covers1624.quack.collection.FastStream;
 import net.javasauce.ss.util.MemoizedSupplier;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.List;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.function.BiFunction;
 import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * An output for a task.
@@ -24,6 +28,8 @@ public final class TaskOutput<T> extends TaskIO<T> {
     private final boolean isComputed;
 
     private @Nullable MemoizedSupplier<CompletableFuture<T>> derivedFuture;
+    private @Nullable Supplier<Optional<T>> derivedPeek;
+    private Supplier<List<Task>> derivedUpstream = List::of;
     private @Nullable CompletableFuture<T> future;
     private @Nullable T value;
 
@@ -59,6 +65,8 @@ public final class TaskOutput<T> extends TaskIO<T> {
      */
     @Override
     public T get() {
+        if (value == null && Task.isPeeking()) return peek().orElseThrow(Task.NotPeekableException::new);
+
         return Objects.requireNonNull(value, "Output value has not been set yet.");
     }
 
@@ -95,6 +103,8 @@ public final class TaskOutput<T> extends TaskIO<T> {
             value = func.apply(e);
             return value;
         }));
+        derivedPeek = () -> aIo.peek().map(func);
+        derivedUpstream = aIo::upstream;
     }
 
     /**
@@ -116,6 +126,8 @@ public final class TaskOutput<T> extends TaskIO<T> {
             value = func.apply(a, b);
             return value;
         }));
+        derivedPeek = () -> aIo.peek().flatMap(a -> bIo.peek().map(b -> func.apply(a, b)));
+        derivedUpstream = () -> FastStream.concat(aIo.upstream(), bIo.upstream()).toList();
     }
 
     @Override
@@ -123,6 +135,28 @@ public final class TaskOutput<T> extends TaskIO<T> {
         return value != null;
     }
 
+    @Override
+    Optional<T> peek() {
+        if (value != null) return Optional.of(value);
+        if (derivedPeek != null) return derivedPeek.get();
+        return Optional.empty();
+    }
+
+    @Override
+    List<Task> upstream() {
+        return FastStream.concat(List.of(task), derivedUpstream.get()).toList();
+    }
+
+    /**
+     * Set the value of a derived output from its peeked value, for when
+     * the derivation is skipped along with the task's dependencies.
+     */
+    void resolvePeeked() {
+        if (value == null && derivedPeek != null) {
+            value = derivedPeek.get().orElseThrow(Task.NotPeekableException::new);
+        }
+    }
+
     /**
      * @return If this task output value is set when the task executes.
      */
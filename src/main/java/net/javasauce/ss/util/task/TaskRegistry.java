@@ -0,0 +1,44 @@
+package net.javasauce.ss.util.task;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * De-duplicates tasks which do the same work, by their {@link Task#getIdentity() identity}.
+ * <p>
+ * Tasks which support de-duplication should intern themselves in their factory method,
+ * once configured. Creating an equivalent task then returns the first, so shared work
+ * such as library downloads or JDK setup is only ever scheduled once.
+ * <p>
+ * Interned tasks live for the whole process, a task which has already completed is handed
+ * back as-is. Tasks which failed are replaced, so their work may be retried.
+ */
+public final class TaskRegistry {
+
+    private static final Map<Object, Task> TASKS = new ConcurrentHashMap<>();
+
+    private TaskRegistry() {
+    }
+
+    /**
+     * Intern the given task.
+     * <p>
+     * Tasks without an identity, or with explicit dependencies, are never interned.
+     *
+     * @param task The configured task.
+     * @return The existing equivalent task, or the given task.
+     */
+    @SuppressWarnings ("unchecked")
+    public static <T extends Task> T intern(T task) {
+        if (task.hasExplicitDependencies()) return task;
+
+        var identity = task.getIdentity();
+        if (identity == null) return task;
+
+        return (T) TASKS.compute(identity, (k, existing) -> {
+            if (existing == null) return task;
+            if (existing.isFutureResolved() && existing.getFuture().isCompletedExceptionally()) return task;
+            return existing;
+        });
+    }
+}
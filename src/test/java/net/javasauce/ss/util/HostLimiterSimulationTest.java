@@ -0,0 +1,141 @@
+package net.javasauce.ss.util;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs requests through a {@link HostLimiter} against a local HTTP server which behaves
+ * like a struggling origin.
+ * <p>
+ * The server handles a fixed number of requests at once at its normal latency. Beyond that,
+ * every extra request slows all of them down, and far beyond it requests are rejected with
+ * a 503. A small number of requests fail at random regardless of load.
+ */
+public class HostLimiterSimulationTest {
+
+    private static final int CAPACITY = 6;
+    private static final int REJECT_ABOVE = CAPACITY * 3;
+    private static final int BASE_LATENCY_MS = 20;
+    private static final int OVERLOAD_LATENCY_MS = 15;
+    private static final double RANDOM_FAILURE_RATE = 0.01;
+    private static final int MAX_PER_HOST = 64;
+    private static final int REQUESTS = 400;
+
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger received = new AtomicInteger();
+    private final AtomicBoolean down = new AtomicBoolean();
+
+    private HttpServer server;
+    private HttpClient client;
+    private String url;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/", exchange -> {
+            received.incrementAndGet();
+            int current = active.incrementAndGet();
+            try {
+                int status = 200;
+                if (down.get() || current > REJECT_ABOVE || ThreadLocalRandom.current().nextDouble() < RANDOM_FAILURE_RATE) {
+                    status = 503;
+                } else {
+                    Thread.sleep(BASE_LATENCY_MS + (long) OVERLOAD_LATENCY_MS * Math.max(0, current - CAPACITY));
+                }
+                exchange.sendResponseHeaders(status, -1);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } finally {
+                active.decrementAndGet();
+                exchange.close();
+            }
+        });
+        server.start();
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        url = "http://localhost:" + server.getAddress().getPort() + "/";
+    }
+
+    @AfterEach
+    public void tearDown() {
+        client.close();
+        server.stop(0);
+    }
+
+    @Test
+    public void testLimitConvergesBelowOverload() throws Exception {
+        var limiter = new HostLimiter(MAX_PER_HOST);
+        var failed = new AtomicInteger();
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < REQUESTS; i++) {
+                futures.add(executor.submit(() -> {
+                    for (int attempt = 1; attempt <= 10; attempt++) {
+                        try {
+                            if (request(limiter)) return null;
+                        } catch (HostLimiter.HostUnavailableException ex) {
+                            HostLimiter.backoff(attempt, ex);
+                            continue;
+                        }
+                        HostLimiter.backoff(attempt, new IOException("Request failed."));
+                    }
+                    failed.incrementAndGet();
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+
+        assertEquals(0, failed.get(), "Requests failed after all retries.");
+        int limit = limiter.limit("localhost");
+        assertTrue(limit >= 1 && limit <= REJECT_ABOVE, "Limit " + limit + " did not converge below where the server rejects requests.");
+    }
+
+    @Test
+    public void testCircuitOpensAgainstFailingServer() throws Exception {
+        down.set(true);
+        var limiter = new HostLimiter(MAX_PER_HOST);
+        for (int i = 0; i < HostLimiter.TRIP_FAILURES; i++) {
+            assertFalse(request(limiter));
+        }
+        assertThrows(HostLimiter.HostUnavailableException.class, () -> request(limiter));
+        // Rejected requests never reach the server.
+        assertEquals(HostLimiter.TRIP_FAILURES, received.get());
+    }
+
+    // Returns if the request succeeded.
+    private boolean request(HostLimiter limiter) throws IOException, InterruptedException {
+        try (var permit = limiter.acquire(url)) {
+            try {
+                var response = client.send(HttpRequest.newBuilder(URI.create(url)).build(), HttpResponse.BodyHandlers.discarding());
+                permit.responding();
+                if (response.statusCode() == 200) return true;
+                permit.failed();
+            } catch (IOException ex) {
+                permit.failed();
+            }
+            return false;
+        }
+    }
+}
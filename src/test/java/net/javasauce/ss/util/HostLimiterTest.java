@@ -0,0 +1,157 @@
+package net.javasauce.ss.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HostLimiterTest {
+
+    private static final String HOST = "example.com";
+    private static final String URL = "https://" + HOST + "/file";
+
+    private long now;
+
+    @Test
+    public void testLimitGrowsAdditively() throws IOException {
+        var limiter = new HostLimiter(4, 64, () -> now);
+        for (int i = 0; i < 4; i++) {
+            request(limiter, true, 10);
+        }
+        assertEquals(4, limiter.limit(HOST));
+
+        // Roughly one extra request per limit's worth of successes.
+        request(limiter, true, 10);
+        assertEquals(5, limiter.limit(HOST));
+    }
+
+    @Test
+    public void testLimitCappedAtMax() throws IOException {
+        var limiter = new HostLimiter(4, 64, () -> now);
+        for (int i = 0; i < 10_000; i++) {
+            request(limiter, true, 10);
+        }
+        assertEquals(64, limiter.limit(HOST));
+    }
+
+    @Test
+    public void testFailureHalvesLimit() throws IOException {
+        var limiter = new HostLimiter(16, 64, () -> now);
+        request(limiter, true, 10);
+        request(limiter, false, 10);
+        assertEquals(8, limiter.limit(HOST));
+    }
+
+    @Test
+    public void testConcurrentFailuresDecreaseOnce() throws IOException {
+        var limiter = new HostLimiter(16, 64, () -> now);
+        request(limiter, true, 10);
+
+        var a = limiter.acquire(URL);
+        var b = limiter.acquire(URL);
+        now += TimeUnit.MILLISECONDS.toNanos(10);
+        a.failed();
+        a.close();
+        b.failed();
+        b.close();
+        assertEquals(8, limiter.limit(HOST));
+
+        // Once a baseline latency has passed, failures count again.
+        now += TimeUnit.MILLISECONDS.toNanos(10);
+        request(limiter, false, 10);
+        assertEquals(4, limiter.limit(HOST));
+    }
+
+    @Test
+    public void testSlowResponseShrinksLimit() throws IOException {
+        var limiter = new HostLimiter(16, 64, () -> now);
+        request(limiter, true, 10);
+        request(limiter, true, 50);
+        assertEquals(12, limiter.limit(HOST));
+    }
+
+    @Test
+    public void testCircuitOpensAfterConsecutiveFailures() throws IOException {
+        var limiter = new HostLimiter(4, 64, () -> now);
+        for (int i = 0; i < HostLimiter.TRIP_FAILURES - 1; i++) {
+            request(limiter, false, 10);
+        }
+        // A success resets the count.
+        request(limiter, true, 10);
+        for (int i = 0; i < HostLimiter.TRIP_FAILURES - 1; i++) {
+            request(limiter, false, 10);
+        }
+        // Still closed, or this would throw.
+        request(limiter, false, 10);
+        assertThrows(HostLimiter.HostUnavailableException.class, () -> limiter.acquire(URL));
+    }
+
+    @Test
+    public void testSuccessfulProbeClosesCircuit() throws IOException {
+        var limiter = new HostLimiter(4, 64, () -> now);
+        trip(limiter);
+
+        now += TimeUnit.SECONDS.toNanos(5);
+        // Half open, only the probe may run.
+        assertEquals(1, limiter.limit(HOST));
+        request(limiter, true, 10);
+
+        assertEquals(2, limiter.limit(HOST));
+        assertDoesNotThrow(() -> limiter.acquire(URL).close());
+    }
+
+    @Test
+    public void testFailedProbeReopensForLonger() throws IOException {
+        var limiter = new HostLimiter(4, 64, () -> now);
+        trip(limiter);
+
+        now += TimeUnit.SECONDS.toNanos(5);
+        request(limiter, false, 10);
+        assertThrows(HostLimiter.HostUnavailableException.class, () -> limiter.acquire(URL));
+
+        now += TimeUnit.SECONDS.toNanos(5);
+        assertThrows(HostLimiter.HostUnavailableException.class, () -> limiter.acquire(URL));
+
+        now += TimeUnit.SECONDS.toNanos(5);
+        assertDoesNotThrow(() -> limiter.acquire(URL).close());
+    }
+
+    @Test
+    public void testFailureClassification() {
+        var serverError = new HttpStatusException(URL, 503);
+        assertTrue(HostLimiter.isRetryable(serverError));
+        assertTrue(HostLimiter.isHostFailure(serverError));
+
+        var notFound = new HttpStatusException(URL, 404);
+        assertFalse(HostLimiter.isRetryable(notFound));
+        assertFalse(HostLimiter.isHostFailure(notFound));
+
+        var rateLimited = new HttpStatusException(URL, 429);
+        assertTrue(HostLimiter.isRetryable(rateLimited));
+        assertTrue(HostLimiter.isHostFailure(rateLimited));
+
+        assertFalse(HostLimiter.isRetryable(new FileNotFoundException()));
+        assertTrue(HostLimiter.isRetryable(new SocketTimeoutException()));
+        assertTrue(HostLimiter.isHostFailure(new SocketTimeoutException()));
+    }
+
+    private void trip(HostLimiter limiter) throws IOException {
+        for (int i = 0; i < HostLimiter.TRIP_FAILURES; i++) {
+            request(limiter, false, 10);
+        }
+        assertThrows(HostLimiter.HostUnavailableException.class, () -> limiter.acquire(URL));
+    }
+
+    private void request(HostLimiter limiter, boolean success, long latencyMillis) throws IOException {
+        try (var permit = limiter.acquire(URL)) {
+            now += TimeUnit.MILLISECONDS.toNanos(latencyMillis);
+            if (!success) {
+                permit.failed();
+            }
+        }
+    }
+}
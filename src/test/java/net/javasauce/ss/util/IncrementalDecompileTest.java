@@ -0,0 +1,144 @@
+package net.javasauce.ss.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.tools.ToolProvider;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IncrementalDecompileTest {
+
+    private static final Map<String, String> SOURCES = Map.of(
+            "a/Base", "package a; public class Base { public int value() { return 1; } }",
+            "a/Sub", "package a; public class Sub extends Base { }",
+            "a/SubSub", "package a; public class SubSub extends Sub { }",
+            "a/Iface", "package a; public interface Iface { }",
+            "a/Impl", "package a; public class Impl implements Iface { }",
+            "a/BaseUser", "package a; public class BaseUser { int use(Base b) { return b.value(); } }",
+            "a/SubSubUser", "package a; public class SubSubUser { Object make() { return new SubSub(); } }",
+            "a/Outer", "package a; public class Outer { public static class Inner { int x() { return 1; } } }",
+            "a/Unrelated", "package a; public class Unrelated { }",
+            "a/Gone", "package a; public class Gone { }"
+    );
+
+    @TempDir
+    public Path tempDir;
+
+    @Test
+    public void testUnchanged() throws IOException {
+        var jar = jar("a", SOURCES, Set.of());
+        var plan = IncrementalDecompile.plan(jar, jar);
+        assertEquals(0, plan.changed());
+        assertTrue(plan.decompile().isEmpty());
+        assertEquals(SOURCES.keySet(), plan.reuse());
+    }
+
+    @Test
+    public void testSupertypeChangePropagates() throws IOException {
+        var previous = jar("previous", SOURCES, Set.of());
+        var sources = new HashMap<>(SOURCES);
+        sources.put("a/Base", "package a; public class Base { public int value() { return 2; } }");
+        var plan = IncrementalDecompile.plan(previous, jar("current", sources, Set.of()));
+
+        assertEquals(1, plan.changed());
+        // Subtypes, transitively, and anything referencing any of them.
+        assertEquals(Set.of("a/Base", "a/Sub", "a/SubSub", "a/BaseUser", "a/SubSubUser"), plan.decompile());
+        assertEquals(Set.of("a/Iface", "a/Impl", "a/Outer", "a/Unrelated", "a/Gone"), plan.reuse());
+    }
+
+    @Test
+    public void testInterfaceChangePropagates() throws IOException {
+        var previous = jar("previous", SOURCES, Set.of());
+        var sources = new HashMap<>(SOURCES);
+        sources.put("a/Iface", "package a; public interface Iface { default void run() { } }");
+        var plan = IncrementalDecompile.plan(previous, jar("current", sources, Set.of()));
+
+        assertEquals(1, plan.changed());
+        assertEquals(Set.of("a/Iface", "a/Impl"), plan.decompile());
+    }
+
+    @Test
+    public void testInnerClassChange() throws IOException {
+        var previous = jar("previous", SOURCES, Set.of());
+        var sources = new HashMap<>(SOURCES);
+        sources.put("a/Outer", "package a; public class Outer { public static class Inner { int x() { return 2; } } }");
+        var plan = IncrementalDecompile.plan(previous, jar("current", sources, Set.of()));
+
+        assertEquals(1, plan.changed());
+        assertEquals(Set.of("a/Outer"), plan.decompile());
+        assertFalse(plan.reuse().contains("a/Outer"));
+    }
+
+    @Test
+    public void testRemovedClass() throws IOException {
+        var sources = new HashMap<>(SOURCES);
+        sources.put("a/GoneUser", "package a; public class GoneUser { Gone gone; }");
+        var previous = jar("previous", sources, Set.of());
+        var plan = IncrementalDecompile.plan(previous, jar("current", sources, Set.of("a/Gone")));
+
+        assertEquals(0, plan.changed());
+        // Nothing left to decompile of Gone itself, its users reference something which no longer exists.
+        assertEquals(Set.of("a/GoneUser"), plan.decompile());
+        assertFalse(plan.reuse().contains("a/Gone"));
+    }
+
+    @Test
+    public void testAddedClass() throws IOException {
+        var previous = jar("previous", SOURCES, Set.of());
+        var sources = new HashMap<>(SOURCES);
+        sources.put("a/Added", "package a; public class Added extends Unrelated { }");
+        var plan = IncrementalDecompile.plan(previous, jar("current", sources, Set.of()));
+
+        assertEquals(1, plan.changed());
+        assertEquals(Set.of("a/Added"), plan.decompile());
+        assertTrue(plan.reuse().contains("a/Unrelated"));
+    }
+
+    @Test
+    public void testOutputClass() {
+        assertEquals("a/Outer", IncrementalDecompile.outputClass(Path.of("a/Outer.java")));
+        assertEquals("a/Outer", IncrementalDecompile.outputClass(Path.of("a/Outer.java.txt")));
+        assertEquals("a/Outer", IncrementalDecompile.outputClass(Path.of("a/Outer$Inner.java")));
+        assertEquals("Root", IncrementalDecompile.outputClass(Path.of("Root.java")));
+    }
+
+    // Compile the given sources into a jar, leaving out the excluded top level classes.
+    private Path jar(String name, Map<String, String> sources, Set<String> exclude) throws IOException {
+        var dir = tempDir.resolve(name);
+        var srcDir = dir.resolve("src");
+        var classesDir = dir.resolve("classes");
+        Files.createDirectories(classesDir);
+        List<String> args = new ArrayList<>(List.of("-d", classesDir.toString(), "-proc:none"));
+        for (var entry : sources.entrySet()) {
+            var file = srcDir.resolve(entry.getKey() + ".java");
+            Files.createDirectories(file.getParent());
+            Files.writeString(file, entry.getValue());
+            args.add(file.toString());
+        }
+        var compiler = ToolProvider.getSystemJavaCompiler();
+        assertNotNull(compiler, "Tests must run on a JDK.");
+        assertEquals(0, compiler.run(null, null, null, args.toArray(String[]::new)));
+
+        var jar = dir.resolve(name + ".jar");
+        try (var zos = new ZipOutputStream(Files.newOutputStream(jar));
+             Stream<Path> files = Files.walk(classesDir)) {
+            for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile).sorted()::iterator) {
+                var entryName = classesDir.relativize(file).toString().replace('\\', '/');
+                if (exclude.contains(entryName.replaceAll("(\\$.*)?\\.class$", ""))) continue;
+
+                zos.putNextEntry(new ZipEntry(entryName));
+                zos.write(Files.readAllBytes(file));
+                zos.closeEntry();
+            }
+        }
+        return jar;
+    }
+}
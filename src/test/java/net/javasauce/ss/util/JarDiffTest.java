@@ -0,0 +1,194 @@
+package net.javasauce.ss.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JarDiffTest {
+
+    @TempDir
+    public Path tempDir;
+
+    @Test
+    public void testReadClassEntries() throws IOException {
+        var jar = tempDir.resolve("a.jar");
+        Files.write(jar, zip(Map.of(
+                "a/A.class", "A",
+                "a/A$Inner.class", "Inner",
+                "a/b/B.class", "BB",
+                "META-INF/MANIFEST.MF", "Manifest-Version: 1.0",
+                "assets/lang.json", "{}"
+        ), null, ZipEntry.DEFLATED));
+
+        var entries = JarDiff.readClassEntries(jar);
+        assertEquals(List.of("a/A", "a/A$Inner", "a/b/B"), new ArrayList<>(entries.keySet()));
+        assertEquals(new JarDiff.Entry(crc("BB"), 2), entries.get("a/b/B"));
+    }
+
+    @Test
+    public void testCompute() throws IOException {
+        var from = tempDir.resolve("from.jar");
+        var to = tempDir.resolve("to.jar");
+        Files.write(from, zip(Map.of(
+                "Same.class", "same",
+                "Changed.class", "old",
+                "Removed.class", "removed"
+        ), null, ZipEntry.DEFLATED));
+        // Compression doesn't matter, only the uncompressed contents.
+        Files.write(to, zip(Map.of(
+                "Same.class", "same",
+                "Changed.class", "new",
+                "Added.class", "added"
+        ), null, ZipEntry.STORED));
+
+        var diff = JarDiff.compute(from, to);
+        assertEquals(List.of("Added"), diff.added());
+        assertEquals(List.of("Removed"), diff.removed());
+        assertEquals(List.of("Changed"), diff.changed());
+        assertEquals(new JarDiff.Stats(1, 1, 1), diff.stats());
+        assertFalse(diff.isEmpty());
+        assertTrue(JarDiff.compute(from, from).isEmpty());
+    }
+
+    @Test
+    public void testComment() throws IOException {
+        var jar = tempDir.resolve("comment.jar");
+        var entries = Map.of("A.class", "A");
+        // As long as a comment may be, with something which looks like the end record inside it.
+        var comment = "PK\u0005\u0006" + "x".repeat(0xFFFF - 4);
+        Files.write(jar, zip(entries, comment, ZipEntry.DEFLATED));
+
+        assertEquals(Map.of("A", new JarDiff.Entry(crc("A"), 1)), JarDiff.readClassEntries(jar));
+    }
+
+    @Test
+    public void testZip64() throws IOException {
+        var bytes = toZip64(zip(Map.of(
+                "A.class", "A",
+                "b/B.class", "B"
+        ), null, ZipEntry.DEFLATED));
+        var jar = tempDir.resolve("zip64.jar");
+        Files.write(jar, bytes);
+        // Make sure we built it right.
+        try (var zip = new ZipFile(jar.toFile())) {
+            assertEquals(2, zip.size());
+        }
+
+        var entries = JarDiff.readClassEntries(jar);
+        assertEquals(Map.of(
+                "A", new JarDiff.Entry(crc("A"), 1),
+                "b/B", new JarDiff.Entry(crc("B"), 1)
+        ), entries);
+    }
+
+    @Test
+    public void testOnlyReadsTheEnd() throws IOException {
+        Map<String, String> files = new LinkedHashMap<>();
+        for (int i = 0; i < 100; i++) {
+            files.put("C" + i + ".class", "x".repeat(10_000) + i);
+        }
+        var bytes = zip(files, null, ZipEntry.STORED);
+
+        List<Integer> reads = new ArrayList<>();
+        var entries = JarDiff.readClassEntries("test", bytes.length, (offset, len) -> {
+            reads.add(len);
+            return ByteBuffer.wrap(bytes, (int) offset, len).slice().order(ByteOrder.LITTLE_ENDIAN);
+        });
+        assertEquals(100, entries.size());
+        // The tail, which may hold the longest possible comment, then the central directory.
+        assertEquals(2, reads.size());
+        int total = reads.get(0) + reads.get(1);
+        assertTrue(total < bytes.length / 10, "Read " + total + " of " + bytes.length + " bytes.");
+    }
+
+    @Test
+    public void testNotAZip() throws IOException {
+        var file = tempDir.resolve("text.jar");
+        Files.writeString(file, "Not a zip file at all.");
+        assertThrows(IOException.class, () -> JarDiff.readClassEntries(file));
+    }
+
+    private static byte[] zip(Map<String, String> files, String comment, int method) throws IOException {
+        var bos = new ByteArrayOutputStream();
+        try (var zos = new ZipOutputStream(bos)) {
+            zos.setMethod(method);
+            if (comment != null) {
+                zos.setComment(comment);
+            }
+            for (var entry : files.entrySet()) {
+                var bytes = entry.getValue().getBytes(StandardCharsets.UTF_8);
+                var zipEntry = new ZipEntry(entry.getKey());
+                if (method == ZipEntry.STORED) {
+                    zipEntry.setSize(bytes.length);
+                    zipEntry.setCrc(crc(entry.getValue()));
+                }
+                zos.putNextEntry(zipEntry);
+                zos.write(bytes);
+                zos.closeEntry();
+            }
+        }
+        return bos.toByteArray();
+    }
+
+    // Move the central directory size and offset of the given zip into zip64 records, as a zip64 writer would.
+    private static byte[] toZip64(byte[] zip) {
+        var eocd = ByteBuffer.wrap(zip, zip.length - 22, 22).slice().order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(0x06054b50, eocd.getInt(0));
+        int count = Short.toUnsignedInt(eocd.getShort(10));
+        long cenSize = Integer.toUnsignedLong(eocd.getInt(12));
+        long cenOffset = Integer.toUnsignedLong(eocd.getInt(16));
+        long zip64Offset = zip.length - 22;
+
+        var out = ByteBuffer.allocate(zip.length + 56 + 20).order(ByteOrder.LITTLE_ENDIAN);
+        out.put(zip, 0, zip.length - 22);
+
+        out.putInt(0x06064b50);
+        out.putLong(44);
+        out.putShort((short) 45);
+        out.putShort((short) 45);
+        out.putInt(0);
+        out.putInt(0);
+        out.putLong(count);
+        out.putLong(count);
+        out.putLong(cenSize);
+        out.putLong(cenOffset);
+
+        out.putInt(0x07064b50);
+        out.putInt(0);
+        out.putLong(zip64Offset);
+        out.putInt(1);
+
+        out.putInt(0x06054b50);
+        out.putShort((short) 0);
+        out.putShort((short) 0);
+        out.putShort((short) count);
+        out.putShort((short) count);
+        out.putInt(0xFFFFFFFF);
+        out.putInt(0xFFFFFFFF);
+        out.putShort((short) 0);
+        return out.array();
+    }
+
+    private static long crc(String str) {
+        var crc = new CRC32();
+        crc.update(str.getBytes(StandardCharsets.UTF_8));
+        return crc.getValue();
+    }
+}
@@ -0,0 +1,170 @@
+package net.javasauce.ss.util;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JavaHttpTransportTest {
+
+    private static final int SMALL_SIZE = 4 * 1024;
+    private static final int LARGE_SIZE = 32 * 1024 * 1024;
+    private static final String ETAG = "\"v1\"";
+    private static final String LAST_MODIFIED = "Tue, 15 Nov 1994 08:12:31 GMT";
+
+    private final byte[] small = new byte[SMALL_SIZE];
+    private final byte[] large = new byte[LARGE_SIZE];
+
+    private HttpServer server;
+    private String baseUrl;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        ThreadLocalRandom.current().nextBytes(small);
+        ThreadLocalRandom.current().nextBytes(large);
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/small/", exchange -> respond(exchange, small));
+        server.createContext("/large/", exchange -> respond(exchange, large));
+        server.createContext("/cached", exchange -> {
+            if (ETAG.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+            exchange.getResponseHeaders().add("ETag", ETAG);
+            exchange.getResponseHeaders().add("Last-Modified", LAST_MODIFIED);
+            respond(exchange, small);
+        });
+        server.createContext("/ranged", exchange -> {
+            var range = exchange.getRequestHeaders().getFirst("Range").substring("bytes=".length()).split("-");
+            int start = Integer.parseInt(range[0]);
+            int end = Integer.parseInt(range[1]);
+            exchange.sendResponseHeaders(206, end - start + 1);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(small, start, end - start + 1);
+            }
+        });
+        server.createContext("/unranged", exchange -> respond(exchange, small));
+        server.createContext("/missing", exchange -> {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+        });
+        server.start();
+        baseUrl = "http://localhost:" + server.getAddress().getPort();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testConcurrentDownloads() throws Exception {
+        var transport = new JavaHttpTransport();
+        List<Future<byte[]>> smallFutures = new ArrayList<>();
+        List<Future<byte[]>> largeFutures = new ArrayList<>();
+        try (var executor = Executors.newFixedThreadPool(16)) {
+            for (int i = 0; i < 200; i++) {
+                var url = baseUrl + "/small/" + i;
+                smallFutures.add(executor.submit(() -> download(transport, url)));
+            }
+            for (int i = 0; i < 4; i++) {
+                var url = baseUrl + "/large/" + i;
+                largeFutures.add(executor.submit(() -> download(transport, url)));
+            }
+            for (Future<byte[]> future : smallFutures) {
+                assertArrayEquals(small, future.get());
+            }
+            for (Future<byte[]> future : largeFutures) {
+                assertArrayEquals(large, future.get());
+            }
+        }
+    }
+
+    @Test
+    public void testConditionalRequest() throws IOException {
+        var transport = new JavaHttpTransport();
+        var dest = new MemoryDest();
+        assertFalse(transport.get(baseUrl + "/cached", dest, true));
+        assertArrayEquals(small, dest.bytes.toByteArray());
+        assertEquals(ETAG, dest.etag);
+        assertEquals(784887151000L, dest.lastModified);
+
+        var again = new MemoryDest();
+        again.etag = ETAG;
+        assertTrue(transport.get(baseUrl + "/cached", again, true));
+        assertEquals(0, again.bytes.size());
+
+        // Unconditional requests ignore the validators.
+        assertFalse(transport.get(baseUrl + "/cached", again, false));
+        assertArrayEquals(small, again.bytes.toByteArray());
+    }
+
+    @Test
+    public void testUnexpectedStatus() {
+        var transport = new JavaHttpTransport();
+        var ex = assertThrows(HttpStatusException.class, () -> transport.get(baseUrl + "/missing", new MemoryDest(), false));
+        assertEquals(404, ex.statusCode());
+        ex = assertThrows(HttpStatusException.class, () -> transport.getRange(baseUrl + "/missing", 0, 10));
+        assertEquals(404, ex.statusCode());
+    }
+
+    @Test
+    public void testRange() throws IOException {
+        var transport = new JavaHttpTransport();
+        assertArrayEquals(Arrays.copyOfRange(small, 100, 164), transport.getRange(baseUrl + "/ranged", 100, 64));
+        // The server ignored the range.
+        assertNull(transport.getRange(baseUrl + "/unranged", 100, 64));
+    }
+
+    private static void respond(HttpExchange exchange, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(body);
+        }
+    }
+
+    private static byte[] download(HttpTransport transport, String url) throws IOException {
+        var dest = new MemoryDest();
+        transport.get(url, dest, false);
+        return dest.bytes.toByteArray();
+    }
+
+    private static final class MemoryDest implements HttpTransport.Dest {
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private @Nullable String etag;
+        private long lastModified = -1;
+
+        @Override
+        public OutputStream getOutputStream() {
+            bytes.reset();
+            return bytes;
+        }
+
+        // @formatter:off
+        @Override public @Nullable String getEtag() { return etag; }
+        @Override public void setEtag(@Nullable String etag) { this.etag = etag; }
+        @Override public long getLastModified() { return lastModified; }
+        @Override public void setLastModified(long time) { lastModified = time; }
+        // @formatter:on
+    }
+}
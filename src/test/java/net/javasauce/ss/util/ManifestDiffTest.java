@@ -0,0 +1,144 @@
+package net.javasauce.ss.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ManifestDiffTest {
+
+    @Test
+    public void testIdentical() throws IOException {
+        var diff = ManifestDiff.compute(manifest(new Fields()), manifest(new Fields()));
+        assertTrue(diff.isEmpty());
+        assertEquals(ChangeImpact.REGENERATE, diff.impact());
+    }
+
+    @Test
+    public void testIgnoredFields() throws IOException {
+        var b = new Fields();
+        b.releaseTime = "2025-01-02T00:00:00+00:00";
+        b.mainClass = "net.minecraft.client.Main2";
+        assertTrue(ManifestDiff.compute(manifest(new Fields()), manifest(b)).isEmpty());
+    }
+
+    @Test
+    public void testClientChanged() throws IOException {
+        var b = new Fields();
+        b.clientSha1 = "bbbb";
+        var diff = ManifestDiff.compute(manifest(new Fields()), manifest(b));
+        assertEquals(List.of("client"), diff.changes());
+        assertEquals(ChangeImpact.DECOMPILE, diff.impact());
+    }
+
+    @Test
+    public void testMappingsChanged() throws IOException {
+        var b = new Fields();
+        b.mappingsSha1 = "bbbb";
+        var diff = ManifestDiff.compute(manifest(new Fields()), manifest(b));
+        assertEquals(List.of("client_mappings"), diff.changes());
+        assertEquals(ChangeImpact.DECOMPILE, diff.impact());
+    }
+
+    @Test
+    public void testTypeChanged() throws IOException {
+        var b = new Fields();
+        b.type = "snapshot";
+        var diff = ManifestDiff.compute(manifest(new Fields()), manifest(b));
+        assertEquals(List.of("type"), diff.changes());
+        assertEquals(ChangeImpact.DECOMPILE, diff.impact());
+    }
+
+    @Test
+    public void testJavaVersionChanged() throws IOException {
+        var b = new Fields();
+        b.javaVersion = 21;
+        var diff = ManifestDiff.compute(manifest(new Fields()), manifest(b));
+        assertEquals(List.of("javaVersion"), diff.changes());
+        assertEquals(ChangeImpact.RETEST, diff.impact());
+    }
+
+    @Test
+    public void testLibraryChanged() throws IOException {
+        var b = new Fields();
+        b.librarySha1 = "bbbb";
+        var diff = ManifestDiff.compute(manifest(new Fields()), manifest(b));
+        assertEquals(List.of("libraries"), diff.changes());
+        assertEquals(ChangeImpact.RETEST, diff.impact());
+
+        b = new Fields();
+        b.libraryVersion = "1.1";
+        diff = ManifestDiff.compute(manifest(new Fields()), manifest(b));
+        assertEquals(List.of("libraries"), diff.changes());
+        assertEquals(ChangeImpact.RETEST, diff.impact());
+    }
+
+    @Test
+    public void testLibraryUrlChanged() throws IOException {
+        var b = new Fields();
+        b.libraryUrl = "https://mirror.example.com/";
+        var diff = ManifestDiff.compute(manifest(new Fields()), manifest(b));
+        assertEquals(List.of("libraryUrls"), diff.changes());
+        assertEquals(ChangeImpact.REGENERATE, diff.impact());
+    }
+
+    @Test
+    public void testHighestImpactWins() throws IOException {
+        var b = new Fields();
+        b.javaVersion = 21;
+        b.librarySha1 = "bbbb";
+        b.clientSha1 = "bbbb";
+        var diff = ManifestDiff.compute(manifest(new Fields()), manifest(b));
+        assertEquals(List.of("client", "javaVersion", "libraries"), diff.changes());
+        assertEquals(ChangeImpact.DECOMPILE, diff.impact());
+    }
+
+    private static VersionManifest manifest(Fields b) throws IOException {
+        var json = """
+                {
+                  "id": "1.21",
+                  "type": "%s",
+                  "mainClass": "%s",
+                  "releaseTime": "%s",
+                  "javaVersion": { "component": "java-runtime", "majorVersion": %d },
+                  "downloads": {
+                    "client": { "sha1": "%s", "size": 10, "url": "https://example.com/client.jar" },
+                    "client_mappings": { "sha1": "%s", "size": 10, "url": "https://example.com/client.txt" }
+                  },
+                  "libraries": [
+                    {
+                      "name": "com.example:lib:%s",
+                      "downloads": {
+                        "artifact": {
+                          "path": "com/example/lib/%7$s/lib-%7$s.jar",
+                          "sha1": "%s",
+                          "size": 10,
+                          "url": "%slib.jar"
+                        }
+                      }
+                    }
+                  ]
+                }
+                """;
+        return VersionManifest.loadFrom(json.formatted(
+                b.type, b.mainClass, b.releaseTime, b.javaVersion, b.clientSha1, b.mappingsSha1,
+                b.libraryVersion, b.librarySha1, b.libraryUrl
+        ).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static final class Fields {
+
+        private String type = "release";
+        private String mainClass = "net.minecraft.client.Main";
+        private String releaseTime = "2025-01-01T00:00:00+00:00";
+        private int javaVersion = 17;
+        private String clientSha1 = "aaaa";
+        private String mappingsSha1 = "aaaa";
+        private String libraryVersion = "1.0";
+        private String librarySha1 = "aaaa";
+        private String libraryUrl = "https://libraries.example.com/";
+    }
+}
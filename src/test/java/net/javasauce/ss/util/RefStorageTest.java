@@ -0,0 +1,115 @@
+package net.javasauce.ss.util;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.internal.storage.file.FileRepository;
+import org.eclipse.jgit.lib.*;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.transport.ReceiveCommand;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the ref heavy operations SnowShovel performs against each of JGit's ref storage formats.
+ * <p>
+ * Matrix runs create, publish and delete a tag per version, and stage 3 lists
+ * and updates a branch per version.
+ */
+public class RefStorageTest {
+
+    private static final int REF_COUNT = 200;
+
+    @TempDir
+    public Path tempDir;
+
+    @Test
+    public void testRefDirectory() throws Exception {
+        testRefs(tempDir.resolve("refdirectory"), null);
+    }
+
+    @Test
+    public void testReftable() throws Exception {
+        testRefs(tempDir.resolve("reftable"), ConfigConstants.CONFIG_REF_STORAGE_REFTABLE);
+    }
+
+    private static void testRefs(Path repoDir, String format) throws Exception {
+        try (Git git = Git.init().setDirectory(repoDir.toFile()).call()) {
+            Files.writeString(repoDir.resolve("README.md"), "Refs");
+            git.add().addFilepattern(".").call();
+            git.commit()
+                    .setMessage("Initial")
+                    .setSign(false)
+                    .setAuthor("SnowShovel", "snowshovel@javasauce.net")
+                    .setCommitter("SnowShovel", "snowshovel@javasauce.net")
+                    .call();
+            git.tag().setName("existing").setAnnotated(false).call();
+            if (format != null) {
+                ((FileRepository) git.getRepository()).convertRefStorage(format, true, false);
+            }
+        }
+
+        // Re-open, so nothing is left over from the conversion.
+        try (Git git = Git.open(repoDir.toFile())) {
+            var repo = git.getRepository();
+            var head = repo.resolve(Constants.HEAD);
+            assertNotNull(head);
+            assertNotNull(repo.exactRef(Constants.R_TAGS + "existing"), "Conversion lost a ref.");
+
+            for (int i = 0; i < 10; i++) {
+                git.tag().setName("single/" + i).setObjectId(repo.parseCommit(head)).setAnnotated(false).call();
+            }
+            update(repo, i -> new ReceiveCommand(ObjectId.zeroId(), head, Constants.R_TAGS + "batch/" + i));
+            update(repo, i -> new ReceiveCommand(ObjectId.zeroId(), head, Constants.R_HEADS + "branch/" + i));
+
+            // The default branch, and the batch.
+            assertEquals(REF_COUNT + 1, git.branchList().call().size());
+            assertEquals(REF_COUNT + 11, git.tagList().call().size());
+            for (int i = 0; i < REF_COUNT; i++) {
+                var ref = repo.exactRef(Constants.R_TAGS + "batch/" + i);
+                assertNotNull(ref);
+                assertEquals(head, ref.getObjectId());
+            }
+
+            update(repo, i -> new ReceiveCommand(head, ObjectId.zeroId(), Constants.R_TAGS + "batch/" + i));
+            for (int i = 0; i < REF_COUNT; i++) {
+                assertNull(repo.exactRef(Constants.R_TAGS + "batch/" + i));
+            }
+            assertEquals(11, git.tagList().call().size());
+
+            git.tagDelete().setTags(git.tagList().call().stream().map(Ref::getName).toArray(String[]::new)).call();
+            assertTrue(git.tagList().call().isEmpty());
+            assertEquals(REF_COUNT + 1, git.branchList().call().size());
+        }
+
+        // Everything made it to disk.
+        try (Git git = Git.open(repoDir.toFile())) {
+            assertTrue(git.tagList().call().isEmpty());
+            assertEquals(REF_COUNT + 1, git.branchList().call().size());
+        }
+    }
+
+    private static void update(Repository repo, IntFunction<ReceiveCommand> func) throws IOException {
+        List<ReceiveCommand> commands = new ArrayList<>(REF_COUNT);
+        for (int i = 0; i < REF_COUNT; i++) {
+            commands.add(func.apply(i));
+        }
+        var batch = repo.getRefDatabase().newBatchUpdate();
+        batch.setAtomic(true);
+        batch.setAllowNonFastForwards(true);
+        batch.addCommand(commands);
+        try (RevWalk walk = new RevWalk(repo)) {
+            batch.execute(walk, NullProgressMonitor.INSTANCE);
+        }
+        for (ReceiveCommand command : commands) {
+            assertEquals(ReceiveCommand.Result.OK, command.getResult(), command.getRefName());
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package net.javasauce.ss.util;
+
+import net.javasauce.ss.util.matrix.JobMatrix;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RunRequestTest {
+
+    @Test
+    public void testSplitByCount() throws IOException {
+        var timings = timings(Map.of());
+        var matrix = RunRequest.splitJobs(request(10), 3, timings, null);
+        // Nothing known, every version costs the same, so the jobs are as even as possible.
+        assertEquals(4, matrix.jobs().size());
+        assertEquals(List.of(3, 3, 2, 2), jobSizes(matrix));
+        assertAllVersionsOnce(10, matrix);
+    }
+
+    @Test
+    public void testLongestFirst() throws IOException {
+        // Longest first into the least loaded job: 8 | 7 | 6 | 5, then 4 -> 5, 3 -> 6, 2 -> 7, 1 -> 8.
+        var timings = timings(Map.of(
+                "v0", 8L, "v1", 7L, "v2", 6L, "v3", 5L,
+                "v4", 4L, "v5", 3L, "v6", 2L, "v7", 1L
+        ));
+        var matrix = RunRequest.splitJobs(request(8), 2, timings, null);
+        assertEquals(4, matrix.jobs().size());
+        for (var job : matrix.jobs()) {
+            assertEquals(9, cost(job.parseRequest(), timings));
+        }
+        assertAllVersionsOnce(8, matrix);
+    }
+
+    @Test
+    public void testSlowVersionGetsOwnJob() throws IOException {
+        var timings = timings(Map.of(
+                "v0", 1L, "v1", 1L, "v2", 100L, "v3", 1L, "v4", 1L, "v5", 1L
+        ));
+        var matrix = RunRequest.splitJobs(request(6), 3, timings, null);
+        assertEquals(2, matrix.jobs().size());
+
+        assertEquals(List.of("v2"), ids(matrix.jobs().get(0).parseRequest()));
+        assertEquals(List.of("v0", "v1", "v3", "v4", "v5"), ids(matrix.jobs().get(1).parseRequest()));
+    }
+
+    @Test
+    public void testBudgetPicksJobCount() throws IOException {
+        var timings = timings(Map.of(
+                "v0", 600L, "v1", 600L, "v2", 600L, "v3", 600L, "v4", 600L
+        ));
+        // 3000ms total, 1000ms per job.
+        var matrix = RunRequest.splitJobs(request(5), 1, timings, Duration.ofMillis(1000));
+        assertEquals(3, matrix.jobs().size());
+
+        // Never more jobs than versions.
+        matrix = RunRequest.splitJobs(request(5), 1, timings, Duration.ofMillis(1));
+        assertEquals(5, matrix.jobs().size());
+        assertAllVersionsOnce(5, matrix);
+    }
+
+    @Test
+    public void testJobsKeepRequestOrder() throws IOException {
+        var timings = timings(Map.of(
+                "v0", 1L, "v1", 5L, "v2", 2L, "v3", 4L, "v4", 3L
+        ));
+        var matrix = RunRequest.splitJobs(request(5), 5, timings, null);
+        assertEquals(1, matrix.jobs().size());
+        var job = matrix.jobs().getFirst().parseRequest();
+        assertEquals("reason", job.reason());
+        assertEquals("1.0.0", job.decompilerVersion());
+        assertEquals(List.of("v0", "v1", "v2", "v3", "v4"), ids(job));
+    }
+
+    private static RunRequest request(int count) {
+        List<VersionRequest> versions = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            versions.add(new VersionRequest("v" + i, "Version v" + i));
+        }
+        return new RunRequest("reason", "1.0.0", versions);
+    }
+
+    private static VersionTimings timings(Map<String, Long> costs) throws IOException {
+        var timings = VersionTimings.load(Path.of("does_not_exist.json"));
+        costs.forEach((id, cost) -> timings.record(id, Map.of(VersionTimings.STAGE_DECOMPILE, cost)));
+        return timings;
+    }
+
+    private static long cost(RunRequest request, VersionTimings timings) {
+        long cost = 0;
+        for (VersionRequest version : request.versions()) {
+            cost += timings.predict(version.id());
+        }
+        return cost;
+    }
+
+    private static List<String> ids(RunRequest request) {
+        return request.versions().stream().map(VersionRequest::id).toList();
+    }
+
+    private static List<Integer> jobSizes(JobMatrix matrix) {
+        return matrix.jobs().stream().map(e -> e.parseRequest().versions().size()).toList();
+    }
+
+    private static void assertAllVersionsOnce(int count, JobMatrix matrix) {
+        List<String> ids = new ArrayList<>(ids(RunRequest.mergeJobs(matrix)));
+        Collections.sort(ids);
+        List<String> expected = new ArrayList<>(ids(request(count)));
+        Collections.sort(expected);
+        assertEquals(expected, ids);
+    }
+}